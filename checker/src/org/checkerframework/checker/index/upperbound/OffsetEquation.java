@@ -23,12 +23,17 @@ import org.checkerframework.javacutil.TreeUtils;
  * An offset equation is 2 sets of Java expression strings, one set of added terms and one set of
  * subtracted terms, and a single int value. The Java expression strings have been standardized and
  * viewpoint adapted.
+ *
+ * <p>The terms are kept sorted, so that equal equations have equal term lists and {@link
+ * #toString()} does not need to sort them.
  */
 public class OffsetEquation {
     public static final OffsetEquation ZERO = createOffsetForInt(0);
     public static final OffsetEquation NEG_1 = createOffsetForInt(-1);
     public static final OffsetEquation ONE = createOffsetForInt(1);
+    /** The added terms, sorted. */
     private final List<String> addedTerms;
+    /** The subtracted terms, sorted. */
     private final List<String> subtractedTerms;
     private String error = null;
     private int intValue = 0;
@@ -67,11 +72,7 @@ public class OffsetEquation {
         if (intValue != that.intValue) {
             return false;
         }
-        if (!addedTerms.containsAll(that.addedTerms) || !that.addedTerms.containsAll(addedTerms)) {
-            return false;
-        }
-        if (!subtractedTerms.containsAll(that.subtractedTerms)
-                || !that.subtractedTerms.containsAll(subtractedTerms)) {
+        if (!addedTerms.equals(that.addedTerms) || !subtractedTerms.equals(that.subtractedTerms)) {
             return false;
         }
         return error != null ? error.equals(that.error) : that.error == null;
@@ -91,17 +92,11 @@ public class OffsetEquation {
         if (addedTerms.isEmpty() && subtractedTerms.isEmpty()) {
             return String.valueOf(intValue);
         }
-        List<String> sortedAdds = new ArrayList<>(addedTerms);
-        Collections.sort(sortedAdds);
-
-        List<String> sortedSubs = new ArrayList<>(subtractedTerms);
-        Collections.sort(sortedSubs);
-
-        String adds = PluginUtil.join(" + ", sortedAdds);
-        String minus = PluginUtil.join(" - ", sortedSubs);
-        if (sortedSubs.size() == 1 && sortedAdds.isEmpty()) {
+        String adds = PluginUtil.join(" + ", addedTerms);
+        String minus = PluginUtil.join(" - ", subtractedTerms);
+        if (subtractedTerms.size() == 1 && addedTerms.isEmpty()) {
             minus = "-" + minus;
-        } else if (!sortedSubs.isEmpty()) {
+        } else if (!subtractedTerms.isEmpty()) {
             minus = " - " + minus;
         }
         String terms = (adds + minus).trim();
@@ -261,6 +256,8 @@ public class OffsetEquation {
             newSubTerms.add(standardizedTerm);
         }
 
+        Collections.sort(newAddterms);
+        Collections.sort(newSubTerms);
         addedTerms.clear();
         addedTerms.addAll(newAddterms);
         subtractedTerms.clear();
@@ -286,19 +283,25 @@ public class OffsetEquation {
             if (addedTerms.contains(term)) {
                 addedTerms.remove(term);
             } else {
-                subtractedTerms.add(term);
+                addSorted(subtractedTerms, term);
             }
         } else if (operator == '+') {
             if (subtractedTerms.contains(term)) {
                 subtractedTerms.remove(term);
             } else {
-                addedTerms.add(term);
+                addSorted(addedTerms, term);
             }
         } else {
             assert false;
         }
     }
 
+    /** Inserts {@code term} into the sorted list {@code terms}, keeping it sorted. */
+    private static void addSorted(List<String> terms, String term) {
+        int index = Collections.binarySearch(terms, term);
+        terms.add(index < 0 ? -index - 1 : index, term);
+    }
+
     private void addInt(int value) {
         intValue += value;
     }
@@ -31,6 +31,10 @@ import org.checkerframework.javacutil.Pair;
  * <p>{@link LTLengthOf} is modeled by {@link LessThanLengthOf}. {@link LTEqLengthOf} is equivalent
  * to @{@link LessThanLengthOf} with an offset of -1. {@link LTOMLengthOf} is equivalent to @{@link
  * LessThanLengthOf} with an offset of 1.
+ *
+ * <p>Qualifiers are immutable: operations on them return new qualifiers. This lets {@link
+ * UpperBoundAnnotatedTypeFactory#getUBQualifier(AnnotationMirror)} share one qualifier between all
+ * uses of an annotation.
  */
 public abstract class UBQualifier {
 
@@ -569,6 +573,7 @@ public abstract class UBQualifier {
                 if (glb == null) {
                     glb = otherglb;
                 } else if (otherglb != null) {
+                    glb = new HashSet<>(glb);
                     glb.addAll(otherglb);
                 }
                 glbMap.put(array, simplifyOffsets(glb));
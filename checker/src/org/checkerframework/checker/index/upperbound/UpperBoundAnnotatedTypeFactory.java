@@ -65,6 +65,7 @@ import org.checkerframework.framework.util.dependenttypes.DependentTypesError;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesHelper;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesTreeAnnotator;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.TreeUtils;
 
 /**
@@ -78,6 +79,14 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
     private final IndexMethodIdentifier imf;
 
+    /** Maps annotations to the qualifiers that they represent. */
+    private final LRUCache<AnnotationMirror, UBQualifier> qualifierCache =
+            createCache("ubQualifier");
+
+    /** Maps qualifiers to the annotations that represent them. */
+    private final LRUCache<UBQualifier, AnnotationMirror> annotationCache =
+            createCache("ubAnnotation");
+
     public UpperBoundAnnotatedTypeFactory(BaseTypeChecker checker) {
         super(checker);
         UNKNOWN = AnnotationUtils.fromClass(elements, UpperBoundUnknown.class);
@@ -327,8 +336,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
         @Override
         public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(a1);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(a2);
+            UBQualifier a1Obj = getUBQualifier(a1);
+            UBQualifier a2Obj = getUBQualifier(a2);
             UBQualifier glb = a1Obj.glb(a2Obj);
             return convertUBQualifierToAnnotation(glb);
         }
@@ -342,16 +351,16 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
          */
         @Override
         public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(a1);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(a2);
+            UBQualifier a1Obj = getUBQualifier(a1);
+            UBQualifier a2Obj = getUBQualifier(a2);
             UBQualifier lub = a1Obj.lub(a2Obj);
             return convertUBQualifierToAnnotation(lub);
         }
 
         @Override
         public AnnotationMirror widenUpperBound(AnnotationMirror a, AnnotationMirror b) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(a);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(b);
+            UBQualifier a1Obj = getUBQualifier(a);
+            UBQualifier a2Obj = getUBQualifier(b);
             UBQualifier lub = a1Obj.widenUpperBound(a2Obj);
             return convertUBQualifierToAnnotation(lub);
         }
@@ -370,8 +379,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
          */
         @Override
         public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
-            UBQualifier subtype = UBQualifier.createUBQualifier(subAnno);
-            UBQualifier supertype = UBQualifier.createUBQualifier(superAnno);
+            UBQualifier subtype = getUBQualifier(subAnno);
+            UBQualifier supertype = getUBQualifier(superAnno);
             return subtype.isSubtype(supertype);
         }
     }
@@ -414,7 +423,7 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             if (isRandomNextInt(tree)) {
                 AnnotatedTypeMirror argType = getAnnotatedType(tree.getArguments().get(0));
                 AnnotationMirror anno = argType.getAnnotationInHierarchy(UNKNOWN);
-                UBQualifier qualifier = UBQualifier.createUBQualifier(anno);
+                UBQualifier qualifier = getUBQualifier(anno);
                 qualifier = qualifier.plusOffset(1);
                 type.replaceAnnotation(convertUBQualifierToAnnotation(qualifier));
             }
@@ -544,8 +553,7 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             }
 
             UBQualifier result = UpperBoundUnknownQualifier.UNKNOWN;
-            UBQualifier numerator =
-                    UBQualifier.createUBQualifier(getAnnotatedType(numeratorTree), UNKNOWN);
+            UBQualifier numerator = getUBQualifier(getAnnotatedType(numeratorTree));
             if (numerator.isLessThanLengthQualifier()) {
                 result = ((LessThanLengthOf) numerator).divide(divisor.intValue());
             }
@@ -577,12 +585,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 return UpperBoundUnknownQualifier.UNKNOWN;
             }
             BinaryTree plusTree = (BinaryTree) numeratorTree;
-            UBQualifier left =
-                    UBQualifier.createUBQualifier(
-                            getAnnotatedType(plusTree.getLeftOperand()), UNKNOWN);
-            UBQualifier right =
-                    UBQualifier.createUBQualifier(
-                            getAnnotatedType(plusTree.getRightOperand()), UNKNOWN);
+            UBQualifier left = getUBQualifier(getAnnotatedType(plusTree.getLeftOperand()));
+            UBQualifier right = getUBQualifier(getAnnotatedType(plusTree.getRightOperand()));
             if (left.isLessThanLengthQualifier() && right.isLessThanLengthQualifier()) {
                 LessThanLengthOf leftLTL = (LessThanLengthOf) left;
                 LessThanLengthOf rightLTL = (LessThanLengthOf) right;
@@ -636,6 +640,41 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         }
     }
 
+    /**
+     * Returns the qualifier that {@code anno} represents. The qualifier of each annotation is only
+     * computed once, and is shared by all callers.
+     *
+     * @param anno an annotation in the Upper Bound hierarchy
+     * @return the qualifier that {@code anno} represents
+     */
+    public UBQualifier getUBQualifier(AnnotationMirror anno) {
+        UBQualifier qualifier = qualifierCache.getCounted(anno);
+        if (qualifier == null) {
+            qualifier = UBQualifier.createUBQualifier(anno);
+            qualifierCache.put(anno, qualifier);
+        }
+        return qualifier;
+    }
+
+    /**
+     * Returns the qualifier of the effective annotation of {@code type} in the Upper Bound
+     * hierarchy.
+     *
+     * @param type an annotated type
+     * @return the qualifier of {@code type}
+     */
+    public UBQualifier getUBQualifier(AnnotatedTypeMirror type) {
+        return getUBQualifier(type.getEffectiveAnnotationInHierarchy(UNKNOWN));
+    }
+
+    /**
+     * Returns the annotation that represents {@code qualifier}. Equal qualifiers are represented by
+     * the same annotation, whose qualifier is then found by {@link
+     * #getUBQualifier(AnnotationMirror)} without parsing the annotation.
+     *
+     * @param qualifier a qualifier
+     * @return the annotation that represents {@code qualifier}
+     */
     public AnnotationMirror convertUBQualifierToAnnotation(UBQualifier qualifier) {
         if (qualifier.isUnknown()) {
             return UNKNOWN;
@@ -645,7 +684,13 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             return POLY;
         }
 
-        LessThanLengthOf ltlQualifier = (LessThanLengthOf) qualifier;
-        return ltlQualifier.convertToAnnotationMirror(processingEnv);
+        AnnotationMirror anno = annotationCache.getCounted(qualifier);
+        if (anno == null) {
+            LessThanLengthOf ltlQualifier = (LessThanLengthOf) qualifier;
+            anno = ltlQualifier.convertToAnnotationMirror(processingEnv);
+            annotationCache.put(qualifier, anno);
+            qualifierCache.put(anno, qualifier);
+        }
+        return anno;
     }
 }
@@ -212,10 +212,10 @@ public class UpperBoundTransfer extends IndexAbstractTransfer {
             CFStore store,
             TransferInput<CFValue, CFStore> in) {
         // larger > smaller
-        UBQualifier largerQual = UBQualifier.createUBQualifier(largerAnno);
+        UBQualifier largerQual = atypeFactory.getUBQualifier(largerAnno);
         // larger + 1 >= smaller
         UBQualifier largerQualPlus1 = largerQual.plusOffset(1);
-        UBQualifier rightQualifier = UBQualifier.createUBQualifier(smallerAnno);
+        UBQualifier rightQualifier = atypeFactory.getUBQualifier(smallerAnno);
         UBQualifier refinedRight = rightQualifier.glb(largerQualPlus1);
 
         if (largerQualPlus1.isLessThanLengthQualifier()) {
@@ -241,8 +241,8 @@ public class UpperBoundTransfer extends IndexAbstractTransfer {
             AnnotationMirror rightAnno,
             CFStore store,
             TransferInput<CFValue, CFStore> in) {
-        UBQualifier leftQualifier = UBQualifier.createUBQualifier(leftAnno);
-        UBQualifier rightQualifier = UBQualifier.createUBQualifier(rightAnno);
+        UBQualifier leftQualifier = atypeFactory.getUBQualifier(leftAnno);
+        UBQualifier rightQualifier = atypeFactory.getUBQualifier(rightAnno);
         UBQualifier refinedRight = rightQualifier.glb(leftQualifier);
 
         if (leftQualifier.isLessThanLengthQualifier()) {
@@ -286,8 +286,8 @@ public class UpperBoundTransfer extends IndexAbstractTransfer {
             Node right,
             AnnotationMirror rightAnno,
             CFStore store) {
-        UBQualifier leftQualifier = UBQualifier.createUBQualifier(leftAnno);
-        UBQualifier rightQualifier = UBQualifier.createUBQualifier(rightAnno);
+        UBQualifier leftQualifier = atypeFactory.getUBQualifier(leftAnno);
+        UBQualifier rightQualifier = atypeFactory.getUBQualifier(rightAnno);
         UBQualifier glb = rightQualifier.glb(leftQualifier);
         AnnotationMirror glbAnno = atypeFactory.convertUBQualifierToAnnotation(glb);
 
@@ -311,7 +311,7 @@ public class UpperBoundTransfer extends IndexAbstractTransfer {
     private void refineNeqArrayLength(
             Node arrayLengthAccess, Node otherNode, AnnotationMirror otherNodeAnno, CFStore store) {
         if (NodeUtils.isArrayLengthFieldAccess(arrayLengthAccess)) {
-            UBQualifier otherQualifier = UBQualifier.createUBQualifier(otherNodeAnno);
+            UBQualifier otherQualifier = atypeFactory.getUBQualifier(otherNodeAnno);
             FieldAccess fa =
                     FlowExpressions.internalReprOfFieldAccess(
                             atypeFactory, (FieldAccessNode) arrayLengthAccess);
@@ -508,7 +508,7 @@ public class UpperBoundTransfer extends IndexAbstractTransfer {
         if (anno == null) {
             return UpperBoundUnknownQualifier.UNKNOWN;
         }
-        return UBQualifier.createUBQualifier(anno);
+        return atypeFactory.getUBQualifier(anno);
     }
 
     private TransferResult<CFValue, CFStore> createTransferResult(
@@ -58,7 +58,7 @@ public class UpperBoundVisitor extends BaseTypeVisitor<UpperBoundAnnotatedTypeFa
         AnnotatedTypeMirror indexType = atypeFactory.getAnnotatedType(indexTree);
         String arrName = FlowExpressions.internalReprOf(this.atypeFactory, arrTree).toString();
 
-        UBQualifier qualifier = UBQualifier.createUBQualifier(indexType, atypeFactory.UNKNOWN);
+        UBQualifier qualifier = atypeFactory.getUBQualifier(indexType);
         if (qualifier.isLessThanLengthOf(arrName)) {
             return;
         }
@@ -145,8 +145,7 @@ public class UpperBoundVisitor extends BaseTypeVisitor<UpperBoundAnnotatedTypeFa
             }
             // The qualifier we need for an array is in the component type, not varType.
             AnnotatedTypeMirror componentType = ((AnnotatedArrayType) varType).getComponentType();
-            UBQualifier qualifier =
-                    UBQualifier.createUBQualifier(componentType, atypeFactory.UNKNOWN);
+            UBQualifier qualifier = atypeFactory.getUBQualifier(componentType);
             if (!qualifier.isLessThanLengthQualifier()) {
                 return false;
             }
@@ -158,7 +157,7 @@ public class UpperBoundVisitor extends BaseTypeVisitor<UpperBoundAnnotatedTypeFa
             return true;
         }
 
-        UBQualifier qualifier = UBQualifier.createUBQualifier(varType, atypeFactory.UNKNOWN);
+        UBQualifier qualifier = atypeFactory.getUBQualifier(varType);
         return qualifier.isLessThanLengthQualifier()
                 && relaxedCommonAssignmentCheck((LessThanLengthOf) qualifier, valueExp);
     }
@@ -171,7 +170,7 @@ public class UpperBoundVisitor extends BaseTypeVisitor<UpperBoundAnnotatedTypeFa
             LessThanLengthOf varLtlQual, ExpressionTree valueExp) {
 
         AnnotatedTypeMirror expType = atypeFactory.getAnnotatedType(valueExp);
-        UBQualifier expQual = UBQualifier.createUBQualifier(expType, atypeFactory.UNKNOWN);
+        UBQualifier expQual = atypeFactory.getUBQualifier(expType);
 
         Long value = IndexUtil.getMaxValue(valueExp, atypeFactory.getValueAnnotatedTypeFactory());
 
@@ -39,6 +39,7 @@ import org.checkerframework.framework.util.AnnotationBuilder;
 import org.checkerframework.framework.util.GraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.TreeUtils;
 
 /**
@@ -100,6 +101,14 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 "daikon.util.RegexUtil"
             };
 
+    /**
+     * Maps strings to their group count if they are valid regular expressions, and to -1
+     * otherwise. The same literals and concatenations are seen by every compilation and every
+     * type factory, so the cache is shared by all of them.
+     */
+    private static final LRUCache<String, Integer> groupCounts =
+            new LRUCache<>("regexGroupCount", 5000);
+
     protected final AnnotationMirror REGEX, REGEXBOTTOM, PARTIALREGEX, POLYREGEX;
     protected final ExecutableElement regexValueElement;
 
@@ -240,7 +249,7 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
     /** Returns the number of groups in the given regex String. */
     public static int getGroupCount(/*@Regex*/ String regex) {
-        return Pattern.compile(regex).matcher("").groupCount();
+        return getGroupCountOrInvalid(regex);
     }
 
     /**
@@ -250,12 +259,38 @@ public class RegexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     @SuppressWarnings("purity") // the checker cannot prove that the method is pure, but it is
     /*@org.checkerframework.dataflow.qual.Pure*/
     private static boolean isRegex(String s) {
+        return getGroupCountOrInvalid(s) >= 0;
+    }
+
+    /**
+     * Returns the number of groups in {@code s} if it is a valid regular expression, and -1
+     * otherwise. Each string is compiled at most once while it is in {@link #groupCounts}.
+     */
+    private static int getGroupCountOrInvalid(String s) {
+        synchronized (groupCounts) {
+            Integer groupCount = groupCounts.getCounted(s);
+            if (groupCount != null) {
+                return groupCount;
+            }
+        }
+        int groupCount;
         try {
-            Pattern.compile(s);
+            groupCount = Pattern.compile(s).matcher("").groupCount();
         } catch (PatternSyntaxException e) {
-            return false;
+            groupCount = -1;
+        }
+        synchronized (groupCounts) {
+            groupCounts.put(s, groupCount);
+        }
+        return groupCount;
+    }
+
+    @Override
+    public void printCacheStatistics() {
+        super.printCacheStatistics();
+        synchronized (groupCounts) {
+            System.out.println("  " + groupCounts.getStatistics());
         }
-        return true;
     }
 
     private static class RegexPropagationAnnotator extends PropagationTreeAnnotator {
@@ -10,14 +10,13 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -67,17 +66,24 @@ public class Analysis<
     /** Instance of the types utility. */
     protected final Types types;
 
-    /** Then stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> thenStores;
+    /**
+     * Then stores before every basic block, indexed by {@link Block#getDenseId()} (assumed to be
+     * 'no information' if {@code null}).
+     */
+    protected ArrayList<S> thenStores;
 
-    /** Else stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> elseStores;
+    /**
+     * Else stores before every basic block, indexed by {@link Block#getDenseId()} (assumed to be
+     * 'no information' if {@code null}).
+     */
+    protected ArrayList<S> elseStores;
 
     /**
-     * Number of times every block has been analyzed since the last time widening was applied. Null,
-     * if maxCountBeforeWidening is -1 which implies widening isn't used for this analysis.
+     * Number of times every block has been analyzed since the last time widening was applied,
+     * indexed by {@link Block#getDenseId()}. Null, if maxCountBeforeWidening is -1 which implies
+     * widening isn't used for this analysis.
      */
-    protected IdentityHashMap<Block, Integer> blockCount;
+    protected int[] blockCount;
 
     /**
      * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't
@@ -86,9 +92,10 @@ public class Analysis<
     protected final int maxCountBeforeWidening;
 
     /**
-     * The transfer inputs before every basic block (assumed to be 'no information' if not present).
+     * The transfer inputs before every basic block, indexed by {@link Block#getDenseId()} (assumed
+     * to be 'no information' if {@code null}).
      */
-    protected IdentityHashMap<Block, TransferInput<A, S>> inputs;
+    protected ArrayList<TransferInput<A, S>> inputs;
 
     /** The stores after every return statement. */
     protected IdentityHashMap<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
@@ -426,10 +433,11 @@ public class Analysis<
     /** Initialize the analysis with a new control flow graph. */
     protected void init(ControlFlowGraph cfg) {
         this.cfg = cfg;
-        thenStores = new IdentityHashMap<>();
-        elseStores = new IdentityHashMap<>();
-        blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<Block, Integer>();
-        inputs = new IdentityHashMap<>();
+        int numberOfBlocks = cfg.getNumberOfBlocks();
+        thenStores = new ArrayList<>(Collections.<S>nCopies(numberOfBlocks, null));
+        elseStores = new ArrayList<>(Collections.<S>nCopies(numberOfBlocks, null));
+        blockCount = maxCountBeforeWidening == -1 ? null : new int[numberOfBlocks];
+        inputs = new ArrayList<>(Collections.<TransferInput<A, S>>nCopies(numberOfBlocks, null));
         storesAtReturnStatements = new IdentityHashMap<>();
         worklist = new Worklist(cfg);
         nodeValues = new IdentityHashMap<>();
@@ -461,20 +469,17 @@ public class Analysis<
             // nothing to do
         }
         S initialStore = transferFunction.initialStore(underlyingAST, parameters);
-        Block entry = cfg.getEntryBlock();
-        thenStores.put(entry, initialStore);
-        elseStores.put(entry, initialStore);
-        inputs.put(entry, new TransferInput<>(null, this, initialStore));
+        int entry = cfg.getEntryBlock().getDenseId();
+        thenStores.set(entry, initialStore);
+        elseStores.set(entry, initialStore);
+        inputs.set(entry, new TransferInput<>(null, this, initialStore));
     }
 
     /**
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
-        if (!worklist.contains(b)) {
-            worklist.add(b);
-        }
+        worklist.add(b);
     }
 
     /**
@@ -485,14 +490,10 @@ public class Analysis<
             Block b, Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
         S thenStore = getStoreBefore(b, Store.Kind.THEN);
         S elseStore = getStoreBefore(b, Store.Kind.ELSE);
+        int id = b.getDenseId();
         boolean shouldWiden = false;
-        Integer count = null;
         if (blockCount != null) {
-            count = blockCount.get(b);
-            if (count == null) {
-                count = 0;
-            }
-            shouldWiden = count >= maxCountBeforeWidening;
+            shouldWiden = blockCount[id] >= maxCountBeforeWidening;
         }
 
         switch (kind) {
@@ -501,9 +502,10 @@ public class Analysis<
                     // Update the then store
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores.set(id, newThenStore);
                         if (elseStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, newThenStore, elseStore));
+                            inputs.set(
+                                    id, new TransferInput<>(node, this, newThenStore, elseStore));
                             addBlockToWorklist = true;
                         }
                     }
@@ -514,9 +516,10 @@ public class Analysis<
                     // Update the else store
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores.set(id, newElseStore);
                         if (thenStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, thenStore, newElseStore));
+                            inputs.set(
+                                    id, new TransferInput<>(node, this, thenStore, newElseStore));
                             addBlockToWorklist = true;
                         }
                     }
@@ -527,9 +530,9 @@ public class Analysis<
                     // Currently there is only one regular store
                     S newStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newStore.equals(thenStore)) {
-                        thenStores.put(b, newStore);
-                        elseStores.put(b, newStore);
-                        inputs.put(b, new TransferInput<>(node, this, newStore));
+                        thenStores.set(id, newStore);
+                        elseStores.set(id, newStore);
+                        inputs.set(id, new TransferInput<>(node, this, newStore));
                         addBlockToWorklist = true;
                     }
                 } else {
@@ -537,27 +540,27 @@ public class Analysis<
 
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores.set(id, newThenStore);
                         storeChanged = true;
                     }
 
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores.set(id, newElseStore);
                         storeChanged = true;
                     }
 
                     if (storeChanged) {
-                        inputs.put(b, new TransferInput<>(node, this, newThenStore, newElseStore));
+                        inputs.set(id, new TransferInput<>(node, this, newThenStore, newElseStore));
                         addBlockToWorklist = true;
                     }
                 }
         }
         if (blockCount != null) {
             if (shouldWiden) {
-                blockCount.put(b, 0);
+                blockCount[id] = 0;
             } else {
-                blockCount.put(b, count + 1);
+                blockCount[id]++;
             }
         }
 
@@ -579,31 +582,24 @@ public class Analysis<
     /**
      * A worklist is a priority queue of blocks in which the order is given by depth-first ordering
      * to place non-loop predecessors ahead of successors.
+     *
+     * <p>Since the {@link Block#getDenseId() dense id} of a block is its position in the
+     * depth-first order, the queue is represented as a bit set of dense ids: the block with the
+     * highest priority is the one with the lowest set bit. Adding, removing and testing for a block
+     * therefore neither allocates nor compares blocks, and adding a block that is already present
+     * has no effect.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected IdentityHashMap<Block, Integer> depthFirstOrder;
-
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
-        public class DFOComparator implements Comparator<Block> {
-            @Override
-            public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
-            }
-        }
+        /** The control flow graph whose blocks are on this worklist. */
+        protected final ControlFlowGraph cfg;
 
-        /** The backing priority queue. */
-        protected PriorityQueue<Block> queue;
+        /** The dense ids of the blocks on the worklist. */
+        protected final BitSet queue;
 
         public Worklist(ControlFlowGraph cfg) {
-            depthFirstOrder = new IdentityHashMap<>();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
-            }
-
-            queue = new PriorityQueue<Block>(11, new DFOComparator());
+            this.cfg = cfg;
+            this.queue = new BitSet(cfg.getNumberOfBlocks());
         }
 
         public boolean isEmpty() {
@@ -611,20 +607,29 @@ public class Analysis<
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            return queue.get(block.getDenseId());
         }
 
         public void add(Block block) {
-            queue.add(block);
+            queue.set(block.getDenseId());
         }
 
-        public Block poll() {
-            return queue.poll();
+        public /*@Nullable*/ Block poll() {
+            int id = queue.nextSetBit(0);
+            if (id < 0) {
+                return null;
+            }
+            queue.clear(id);
+            return cfg.getBlockByDenseId(id);
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            List<Block> blocks = new ArrayList<>();
+            for (int id = queue.nextSetBit(0); id >= 0; id = queue.nextSetBit(id + 1)) {
+                blocks.add(cfg.getBlockByDenseId(id));
+            }
+            return "Worklist(" + blocks + ")";
         }
     }
 
@@ -641,7 +646,7 @@ public class Analysis<
      *     b}.
      */
     protected /*@Nullable*/ TransferInput<A, S> getInputBefore(Block b) {
-        return inputs.get(b);
+        return readFromStore(inputs, b);
     }
 
     /** @return the store corresponding to the location right before the basic block {@code b}. */
@@ -658,11 +663,16 @@ public class Analysis<
     }
 
     /**
-     * Read the {@link Store} for a particular basic block from a map of stores (or {@code null} if
-     * none exists yet).
+     * Read the {@link Store} for a particular basic block from a list of stores indexed by {@link
+     * Block#getDenseId()} (or {@code null} if none exists yet, or if {@code b} is not a block of
+     * the current control flow graph).
      */
-    protected static <S> /*@Nullable*/ S readFromStore(Map<Block, S> stores, Block b) {
-        return stores.get(b);
+    protected <V> /*@Nullable*/ V readFromStore(List<V> stores, Block b) {
+        int id = b.getDenseId();
+        if (id < 0 || id >= stores.size() || cfg.getBlockByDenseId(id) != b) {
+            return null;
+        }
+        return stores.get(id);
     }
 
     /** Is the analysis currently running? */
@@ -746,7 +756,14 @@ public class Analysis<
     public AnalysisResult<A, S> getResult() {
         assert !isRunning;
         IdentityHashMap<Tree, Node> treeLookup = cfg.getTreeLookup();
-        return new AnalysisResult<>(nodeValues, inputs, treeLookup, finalLocalValues);
+        IdentityHashMap<Block, TransferInput<A, S>> inputsByBlock = new IdentityHashMap<>();
+        for (int id = 0; id < inputs.size(); id++) {
+            TransferInput<A, S> input = inputs.get(id);
+            if (input != null) {
+                inputsByBlock.put(cfg.getBlockByDenseId(id), input);
+            }
+        }
+        return new AnalysisResult<>(nodeValues, inputsByBlock, treeLookup, finalLocalValues);
     }
 
     /**
@@ -755,8 +772,9 @@ public class Analysis<
      */
     public /*@Nullable*/ S getRegularExitStore() {
         SpecialBlock regularExitBlock = cfg.getRegularExitBlock();
-        if (inputs.containsKey(regularExitBlock)) {
-            S regularExitStore = inputs.get(regularExitBlock).getRegularStore();
+        TransferInput<A, S> regularExitInput = getInputBefore(regularExitBlock);
+        if (regularExitInput != null) {
+            S regularExitStore = regularExitInput.getRegularStore();
             return regularExitStore;
         } else {
             return null;
@@ -764,7 +782,7 @@ public class Analysis<
     }
 
     public S getExceptionalExitStore() {
-        S exceptionalExitStore = inputs.get(cfg.getExceptionalExitBlock()).getRegularStore();
+        S exceptionalExitStore = getInputBefore(cfg.getExceptionalExitBlock()).getRegularStore();
         return exceptionalExitStore;
     }
 }
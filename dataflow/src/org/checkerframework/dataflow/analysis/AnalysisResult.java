@@ -5,8 +5,12 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
 import com.sun.source.tree.Tree;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import javax.lang.model.element.Element;
@@ -14,6 +18,7 @@ import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.javacutil.Pair;
 
 /**
  * An {@link AnalysisResult} represents the result of a org.checkerframework.dataflow analysis by
@@ -37,6 +42,30 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     /** The stores before every method call. */
     protected final IdentityHashMap<Block, TransferInput<A, S>> stores;
 
+    /**
+     * The stores before and after every node of the basic blocks that have been re-analyzed by
+     * {@link #runAnalysisFor(Node, boolean)}, or {@code null} if store caching is disabled. Blocks
+     * are kept in least-recently-used order.
+     *
+     * @see #enableStoreCache(int)
+     */
+    protected /*@Nullable*/ LinkedHashMap<Block, IdentityHashMap<Node, Pair<S, S>>> storeCache;
+
+    /** The maximum number of nodes whose stores are kept in {@link #storeCache}. */
+    protected int storeCacheSize;
+
+    /** The number of nodes whose stores are currently kept in {@link #storeCache}. */
+    protected int storeCacheNodeCount;
+
+    /** The number of requests for a store whose block was found in {@link #storeCache}. */
+    protected int storeCacheHits;
+
+    /** The number of requests for a store whose block was not in {@link #storeCache}. */
+    protected int storeCacheMisses;
+
+    /** The number of blocks whose stores were evicted from {@link #storeCache}. */
+    protected int storeCacheEvictions;
+
     /** Initialize with a given node-value mapping. */
     public AnalysisResult(
             Map<Node, A> nodeValues,
@@ -47,6 +76,7 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         this.treeLookup = new IdentityHashMap<>(treeLookup);
         this.stores = stores;
         this.finalLocalValues = finalLocalValues;
+        this.storeCache = null;
     }
 
     /** Initialize empty result. */
@@ -55,22 +85,73 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         treeLookup = new IdentityHashMap<>();
         stores = new IdentityHashMap<>();
         finalLocalValues = new HashMap<>();
+        storeCache = null;
+    }
+
+    /**
+     * Enables caching of the stores computed by {@link #getStoreBefore} and {@link
+     * #getStoreAfter}. Without the cache, every such call re-runs the transfer function from the
+     * start of the basic block containing the node. With the cache, the first call for a block
+     * records the stores before and after each of its nodes, and later calls for any node of the
+     * same block only copy the recorded store.
+     *
+     * <p>The cache holds the stores of at most {@code maxNodes} nodes. When it is full, the blocks
+     * that were least recently used are evicted first. A value of zero or less disables caching.
+     *
+     * @param maxNodes the maximum number of nodes whose stores are cached
+     */
+    public void enableStoreCache(int maxNodes) {
+        if (maxNodes > 0) {
+            storeCache = new LinkedHashMap<>(16, 0.75f, true);
+        } else {
+            storeCache = null;
+        }
+        storeCacheSize = maxNodes;
+        storeCacheNodeCount = 0;
+        storeCacheHits = 0;
+        storeCacheMisses = 0;
+        storeCacheEvictions = 0;
+    }
+
+    /** @return the number of requests for a store whose block was found in the store cache */
+    public int getStoreCacheHits() {
+        return storeCacheHits;
+    }
+
+    /** @return the number of requests for a store whose block was not in the store cache */
+    public int getStoreCacheMisses() {
+        return storeCacheMisses;
+    }
+
+    /** @return the number of blocks whose stores were evicted from the store cache */
+    public int getStoreCacheEvictions() {
+        return storeCacheEvictions;
     }
 
     /** Combine with another analysis result. */
     public void combine(AnalysisResult<A, S> other) {
-        for (Entry<Node, A> e : other.nodeValues.entrySet()) {
-            nodeValues.put(e.getKey(), e.getValue());
-        }
-        for (Entry<Tree, Node> e : other.treeLookup.entrySet()) {
-            treeLookup.put(e.getKey(), e.getValue());
-        }
-        for (Entry<Block, TransferInput<A, S>> e : other.stores.entrySet()) {
-            stores.put(e.getKey(), e.getValue());
-        }
-        for (Entry<Element, A> e : other.finalLocalValues.entrySet()) {
-            finalLocalValues.put(e.getKey(), e.getValue());
+        nodeValues.putAll(other.nodeValues);
+        treeLookup.putAll(other.treeLookup);
+        stores.putAll(other.stores);
+        finalLocalValues.putAll(other.finalLocalValues);
+    }
+
+    /**
+     * Combine with the result of {@code analysis}, which must have finished running. This has the
+     * same effect as {@code combine(analysis.getResult())}, but does not first copy the result of
+     * {@code analysis} into a new {@code AnalysisResult}.
+     */
+    public void combine(Analysis<A, S, ?> analysis) {
+        assert !analysis.isRunning;
+        nodeValues.putAll(analysis.nodeValues);
+        treeLookup.putAll(analysis.cfg.getTreeLookup());
+        for (int id = 0; id < analysis.inputs.size(); id++) {
+            TransferInput<A, S> input = analysis.inputs.get(id);
+            if (input != null) {
+                stores.put(analysis.cfg.getBlockByDenseId(id), input);
+            }
         }
+        finalLocalValues.putAll(analysis.finalLocalValues);
     }
 
     /** @return the value of effectively final local variables */
@@ -123,6 +204,11 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         return runAnalysisFor(node, false);
     }
 
+    /** @return the store immediately after a given {@link Node}. */
+    public S getStoreAfter(Node node) {
+        return runAnalysisFor(node, false);
+    }
+
     /**
      * Runs the analysis again within the block of {@code node} and returns the store at the
      * location of {@code node}. If {@code before} is true, then the store immediately before the
@@ -137,7 +223,95 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         if (transferInput == null) {
             return null;
         }
-        return runAnalysisFor(node, before, transferInput);
+        if (storeCache == null) {
+            return runAnalysisFor(node, before, transferInput);
+        }
+
+        IdentityHashMap<Node, Pair<S, S>> blockStores = storeCache.get(block);
+        if (blockStores != null) {
+            storeCacheHits++;
+        } else {
+            storeCacheMisses++;
+            blockStores = runAnalysisForBlock(block, transferInput);
+            if (blockStores == null) {
+                // The analysis is running, so the stores cannot be recorded.
+                return runAnalysisFor(node, before, transferInput);
+            }
+            addToStoreCache(block, blockStores);
+        }
+        Pair<S, S> nodeStores = blockStores.get(node);
+        assert nodeStores != null : "Node " + node + " is not part of its block " + block;
+        // Copy the store, since callers are free to modify the result.
+        return before ? nodeStores.first.copy() : nodeStores.second.copy();
+    }
+
+    /**
+     * Adds the stores of the nodes of {@code block} to {@link #storeCache}, and evicts the least
+     * recently used blocks while the cache holds more than {@link #storeCacheSize} nodes. The
+     * stores of {@code block} itself are never evicted by this call.
+     */
+    private void addToStoreCache(Block block, IdentityHashMap<Node, Pair<S, S>> blockStores) {
+        storeCache.put(block, blockStores);
+        storeCacheNodeCount += blockStores.size();
+        Iterator<Entry<Block, IdentityHashMap<Node, Pair<S, S>>>> iter =
+                storeCache.entrySet().iterator();
+        while (storeCacheNodeCount > storeCacheSize && iter.hasNext()) {
+            Entry<Block, IdentityHashMap<Node, Pair<S, S>>> eldest = iter.next();
+            if (eldest.getKey() != block) {
+                storeCacheNodeCount -= eldest.getValue().size();
+                storeCacheEvictions++;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs the analysis again within {@code block} and returns the stores immediately before and
+     * after each of its nodes. The returned stores are private copies and are not modified by
+     * later transfer function applications.
+     *
+     * @return a map from each node of {@code block} to the pair of its store before and its store
+     *     after, or {@code null} if the analysis is currently running
+     */
+    protected static <A extends AbstractValue<A>, S extends Store<S>>
+            /*@Nullable*/ IdentityHashMap<Node, Pair<S, S>> runAnalysisForBlock(
+                    Block block, TransferInput<A, S> transferInput) {
+        List<Node> contents;
+        switch (block.getType()) {
+            case REGULAR_BLOCK:
+                contents = ((RegularBlock) block).getContents();
+                break;
+            case EXCEPTION_BLOCK:
+                contents = Collections.singletonList(((ExceptionBlock) block).getNode());
+                break;
+            default:
+                // Only regular blocks and exceptional blocks can hold nodes.
+                return new IdentityHashMap<>();
+        }
+
+        Analysis<A, S, ?> analysis = transferInput.analysis;
+        if (analysis.isRunning) {
+            return null;
+        }
+        Node oldCurrentNode = analysis.currentNode;
+        analysis.isRunning = true;
+        try {
+            IdentityHashMap<Node, Pair<S, S>> result = new IdentityHashMap<>();
+            TransferInput<A, S> store = transferInput.copy();
+            S storeBefore = store.getRegularStore().copy();
+            for (Node n : contents) {
+                analysis.currentNode = n;
+                TransferResult<A, S> transferResult = analysis.callTransferFunction(n, store);
+                S storeAfter = transferResult.getRegularStore().copy();
+                result.put(n, Pair.of(storeBefore, storeAfter));
+                store = new TransferInput<>(n, analysis, transferResult);
+                storeBefore = storeAfter;
+            }
+            return result;
+        } finally {
+            analysis.currentNode = oldCurrentNode;
+            analysis.isRunning = false;
+        }
     }
 
     /**
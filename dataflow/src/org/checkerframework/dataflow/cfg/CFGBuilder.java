@@ -876,6 +876,7 @@ public class CFGBuilder {
                 }
             }
 
+            cfg.numberBlocks();
             return cfg;
         }
 
@@ -7,6 +7,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
@@ -17,6 +18,7 @@ import java.util.Queue;
 import java.util.Set;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
@@ -61,6 +63,12 @@ public class ControlFlowGraph {
      */
     protected final List<ReturnNode> returnNodes;
 
+    /**
+     * All blocks reachable from the entry block, indexed by their {@link Block#getDenseId() dense
+     * id}; {@code null} until {@link #numberBlocks()} has been called.
+     */
+    protected /*@Nullable*/ List<Block> denseBlocks;
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -211,6 +219,50 @@ public class ControlFlowGraph {
         return succs;
     }
 
+    /**
+     * Assigns every block reachable from the entry block a dense id between 0 (inclusive) and the
+     * number of such blocks (exclusive). The ids follow the order of {@link
+     * #getDepthFirstOrderedBlocks()}, so an analysis can use them both as array indices and as
+     * worklist priorities. Must be called again if the graph is modified.
+     */
+    public void numberBlocks() {
+        List<Block> dfsOrder = getDepthFirstOrderedBlocks();
+        // A block may appear more than once in the depth-first order; its last
+        // occurrence determines its position.
+        IdentityHashMap<Block, Integer> lastPosition = new IdentityHashMap<>();
+        int position = 0;
+        for (Block b : dfsOrder) {
+            lastPosition.put(b, position++);
+        }
+        denseBlocks = new ArrayList<>(lastPosition.size());
+        position = 0;
+        for (Block b : dfsOrder) {
+            if (lastPosition.get(b) == position++) {
+                ((BlockImpl) b).setDenseId(denseBlocks.size());
+                denseBlocks.add(b);
+            }
+        }
+    }
+
+    /**
+     * @return the number of blocks reachable from the entry block, which is one more than the
+     *     largest {@link Block#getDenseId() dense id}
+     */
+    public int getNumberOfBlocks() {
+        if (denseBlocks == null) {
+            numberBlocks();
+        }
+        return denseBlocks.size();
+    }
+
+    /** @return the block whose {@link Block#getDenseId() dense id} is {@code denseId} */
+    public Block getBlockByDenseId(int denseId) {
+        if (denseBlocks == null) {
+            numberBlocks();
+        }
+        return denseBlocks.get(denseId);
+    }
+
     /** @return the tree-lookup map */
     public IdentityHashMap<Tree, Node> getTreeLookup() {
         return new IdentityHashMap<>(treeLookup);
@@ -28,4 +28,11 @@ public interface Block {
 
     /** @return the unique identifier of this block */
     long getId();
+
+    /**
+     * @return the index of this block in the depth-first order of its control flow graph, or -1 if
+     *     the block is not reachable from the entry block
+     * @see org.checkerframework.dataflow.cfg.ControlFlowGraph#getDepthFirstOrderedBlocks()
+     */
+    int getDenseId();
 }
@@ -17,6 +17,9 @@ public abstract class BlockImpl implements Block {
     /** The last ID that has already been used. */
     protected static long lastId = 0;
 
+    /** The index of this block in its control flow graph, assigned after construction. */
+    protected int denseId = -1;
+
     /** The type of this basic block. */
     protected BlockType type;
 
@@ -37,6 +40,15 @@ public abstract class BlockImpl implements Block {
         return id;
     }
 
+    @Override
+    public int getDenseId() {
+        return denseId;
+    }
+
+    public void setDenseId(int denseId) {
+        this.denseId = denseId;
+    }
+
     @Override
     public BlockType getType() {
         return type;
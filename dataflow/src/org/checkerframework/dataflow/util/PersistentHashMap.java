@@ -0,0 +1,696 @@
+package org.checkerframework.dataflow.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A hash map whose copies share structure, implemented as a hash array mapped trie.
+ *
+ * <p>The map is mutable through the usual {@link Map} interface, but the trie behind it is
+ * immutable: every update replaces the nodes on the path to the updated entry and keeps all other
+ * nodes. Therefore {@link #copy()} takes constant time, and a map and its copies share every node
+ * that neither of them updated afterwards. {@link #containsAllEntriesOf} and, if the merger permits
+ * it, {@link #intersect} skip the nodes that two maps share without looking at their entries.
+ *
+ * <p>Iterators traverse the trie as it was when they were created, so the map may be updated while
+ * it is iterated over. Null keys are not permitted; null values are.
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    /** The number of hash bits used at each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The maximum depth of the trie, including a level of collision nodes. */
+    private static final int MAX_DEPTH = 32 / BITS + 2;
+
+    /** Returned by {@link Node#find} if the key is not in the trie. */
+    private static final Object NOT_FOUND = new Object();
+
+    /** The root of the trie, or null if this map is empty. */
+    private /*@Nullable*/ Node root;
+
+    /** The number of entries in this map. */
+    private int size;
+
+    /** Creates an empty map. */
+    public PersistentHashMap() {
+        this(null, 0);
+    }
+
+    private PersistentHashMap(/*@Nullable*/ Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns a map with the same entries as {@code map}. If {@code map} is a {@code
+     * PersistentHashMap}, this takes constant time.
+     */
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<K, V> map) {
+        if (map instanceof PersistentHashMap) {
+            return ((PersistentHashMap<K, V>) map).copy();
+        }
+        PersistentHashMap<K, V> result = new PersistentHashMap<>();
+        result.putAll(map);
+        return result;
+    }
+
+    /** Returns a map with the same entries as this map, in constant time. */
+    public PersistentHashMap<K, V> copy() {
+        return new PersistentHashMap<>(root, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && root.find(0, key.hashCode(), key) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public /*@Nullable*/ V get(Object key) {
+        if (root == null) {
+            return null;
+        }
+        Object result = root.find(0, key.hashCode(), key);
+        return result == NOT_FOUND ? null : (V) result;
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        V old = get(key);
+        boolean[] added = new boolean[1];
+        Node node = root == null ? BitmapNode.EMPTY : root;
+        root = node.assoc(0, key.hashCode(), key, value, added);
+        if (added[0]) {
+            size++;
+        }
+        return old;
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        if (root == null) {
+            return null;
+        }
+        int hash = key.hashCode();
+        Object old = root.find(0, hash, key);
+        if (old == NOT_FOUND) {
+            return null;
+        }
+        root = root.without(0, hash, key);
+        size--;
+        @SuppressWarnings("unchecked")
+        V result = (V) old;
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                Object key = e.getKey();
+                if (key == null || root == null) {
+                    return false;
+                }
+                Object value = root.find(0, key.hashCode(), key);
+                return value != NOT_FOUND && Objects.equals(value, e.getValue());
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap && ((PersistentHashMap<?, ?>) o).root == root) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /**
+     * Returns true if this map contains every entry of {@code other}, comparing values with {@link
+     * Object#equals}. Nodes shared by the two maps are not inspected.
+     */
+    public boolean containsAllEntriesOf(PersistentHashMap<K, ?> other) {
+        if (other.root == null) {
+            return true;
+        }
+        if (root == null || size < other.size) {
+            return false;
+        }
+        return containsAll(root, other.root, 0);
+    }
+
+    /**
+     * Returns a new map that maps every key of both this map and {@code other} to {@code
+     * merger.apply(thisValue, otherValue)}, omitting the keys for which the merger returns null.
+     *
+     * <p>Nodes shared by the two maps are shared by the result without calling {@code merger}, so
+     * {@code merger} must be idempotent: {@code merger.apply(v, v)} must equal {@code v}. Use
+     * {@link #intersect(PersistentHashMap, BiFunction, boolean)} for other mergers.
+     */
+    public PersistentHashMap<K, V> intersect(
+            PersistentHashMap<K, V> other, BiFunction<V, V, /*@Nullable*/ V> merger) {
+        return intersect(other, merger, false);
+    }
+
+    /**
+     * Returns a new map that maps every key of both this map and {@code other} to {@code
+     * merger.apply(thisValue, otherValue)}, omitting the keys for which the merger returns null.
+     *
+     * @param mergeShared whether {@code merger} is applied to the entries of the nodes that the two
+     *     maps share, too; if false, these nodes are shared by the result, which is only correct if
+     *     {@code merger.apply(v, v)} equals {@code v}
+     */
+    public PersistentHashMap<K, V> intersect(
+            PersistentHashMap<K, V> other,
+            BiFunction<V, V, /*@Nullable*/ V> merger,
+            boolean mergeShared) {
+        if (root == null || other.root == null) {
+            return new PersistentHashMap<>();
+        }
+        int[] count = new int[1];
+        Node result = intersect(root, other.root, 0, merger, mergeShared, count);
+        return new PersistentHashMap<>(result, count[0]);
+    }
+
+    /* --------------------------------------------------------- */
+    /* Operations on nodes */
+    /* --------------------------------------------------------- */
+
+    /** Returns true if the subtrie {@code a} contains every entry of the subtrie {@code b}. */
+    private static boolean containsAll(Node a, Node b, int shift) {
+        if (a == b) {
+            return true;
+        }
+        if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            BitmapNode ba = (BitmapNode) a;
+            BitmapNode bb = (BitmapNode) b;
+            if ((bb.bitmap & ~ba.bitmap) != 0) {
+                return false;
+            }
+            for (int bits = bb.bitmap; bits != 0; bits &= bits - 1) {
+                int bit = Integer.lowestOneBit(bits);
+                int ia = ba.index(bit);
+                int ib = bb.index(bit);
+                Object ka = ba.array[ia];
+                Object kb = bb.array[ib];
+                Object va = ba.array[ia + 1];
+                Object vb = bb.array[ib + 1];
+                if (ka == null && kb == null) {
+                    if (!containsAll((Node) va, (Node) vb, shift + BITS)) {
+                        return false;
+                    }
+                } else if (kb != null) {
+                    Object found = findInSlot(ka, va, shift, kb.hashCode(), kb);
+                    if (found == NOT_FOUND || !Objects.equals(found, vb)) {
+                        return false;
+                    }
+                } else {
+                    for (Cursor c = new Cursor((Node) vb); c.advance(); ) {
+                        Object found = findInSlot(ka, va, shift, c.key.hashCode(), c.key);
+                        if (found == NOT_FOUND || !Objects.equals(found, c.value)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+        for (Cursor c = new Cursor(b); c.advance(); ) {
+            Object found = a.find(shift, c.key.hashCode(), c.key);
+            if (found == NOT_FOUND || !Objects.equals(found, c.value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the subtrie, at level {@code shift}, of the merged common entries of the subtries
+     * {@code a} and {@code b}, or null if there are none; adds the number of its entries to {@code
+     * count[0]}. Unless {@code mergeShared} is true, a subtrie shared by {@code a} and {@code b} is
+     * returned as it is.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> /*@Nullable*/ Node intersect(
+            Node a,
+            Node b,
+            int shift,
+            BiFunction<V, V, V> merger,
+            boolean mergeShared,
+            int[] count) {
+        if (a == b && !mergeShared) {
+            count[0] += a.count;
+            return a;
+        }
+        if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            BitmapNode ba = (BitmapNode) a;
+            BitmapNode bb = (BitmapNode) b;
+            int common = ba.bitmap & bb.bitmap;
+            Object[] array = new Object[2 * Integer.bitCount(common)];
+            int bitmap = 0;
+            int j = 0;
+            for (int bits = common; bits != 0; bits &= bits - 1) {
+                int bit = Integer.lowestOneBit(bits);
+                int ia = ba.index(bit);
+                int ib = bb.index(bit);
+                Object ka = ba.array[ia];
+                Object kb = bb.array[ib];
+                Object va = ba.array[ia + 1];
+                Object vb = bb.array[ib + 1];
+                Object key;
+                Object value;
+                if (ka == null && kb == null) {
+                    key = null;
+                    value =
+                            intersect(
+                                    (Node) va, (Node) vb, shift + BITS, merger, mergeShared, count);
+                    if (value == null) {
+                        continue;
+                    }
+                } else if (ka != null && kb != null) {
+                    if (!matches(ka, kb.hashCode(), kb)) {
+                        continue;
+                    }
+                    key = ka;
+                    value = merger.apply((V) va, (V) vb);
+                    if (value == null) {
+                        continue;
+                    }
+                    count[0]++;
+                } else {
+                    // One side is a leaf: look it up in the other side's subtrie.
+                    Object leafKey = ka != null ? ka : kb;
+                    Object found =
+                            ka != null
+                                    ? findInSlot(kb, vb, shift, leafKey.hashCode(), leafKey)
+                                    : findInSlot(ka, va, shift, leafKey.hashCode(), leafKey);
+                    if (found == NOT_FOUND) {
+                        continue;
+                    }
+                    key = leafKey;
+                    value =
+                            ka != null
+                                    ? merger.apply((V) va, (V) found)
+                                    : merger.apply((V) found, (V) vb);
+                    if (value == null) {
+                        continue;
+                    }
+                    count[0]++;
+                }
+                bitmap |= bit;
+                array[j++] = key;
+                array[j++] = value;
+            }
+            if (bitmap == 0) {
+                return null;
+            }
+            return new BitmapNode(bitmap, j == array.length ? array : Arrays.copyOf(array, j));
+        }
+        // At least one side is a collision node, so all common keys have its hash code.
+        int hash = a instanceof CollisionNode ? ((CollisionNode) a).hash : ((CollisionNode) b).hash;
+        Object[] array = new Object[2 * Math.min(a.count, b.count)];
+        int j = 0;
+        for (Cursor c = new Cursor(a); c.advance() && j < array.length; ) {
+            Object found = b.find(shift, c.key.hashCode(), c.key);
+            if (found == NOT_FOUND) {
+                continue;
+            }
+            Object value = merger.apply((V) c.value, (V) found);
+            if (value == null) {
+                continue;
+            }
+            array[j++] = c.key;
+            array[j++] = value;
+        }
+        if (j == 0) {
+            return null;
+        }
+        count[0] += j / 2;
+        return new CollisionNode(hash, j == array.length ? array : Arrays.copyOf(array, j));
+    }
+
+    /**
+     * Returns the value of {@code key} in the slot, at level {@code shift}, whose key or null is
+     * {@code k} and whose value or child node is {@code v}; or {@link #NOT_FOUND}.
+     */
+    private static Object findInSlot(
+            /*@Nullable*/ Object k, Object v, int shift, int hash, Object key) {
+        if (k == null) {
+            return ((Node) v).find(shift + BITS, hash, key);
+        }
+        return matches(k, hash, key) ? v : NOT_FOUND;
+    }
+
+    /**
+     * Returns true if the key {@code k} of a slot equals {@code key}, whose hash code is {@code
+     * hash}. Keys in the same slot only share some bits of their hash codes, so as in {@link
+     * java.util.HashMap}, the hash codes are compared first: {@code equals} is not called on keys
+     * of unrelated types, and is not always cheap.
+     */
+    private static boolean matches(Object k, int hash, Object key) {
+        return k == key || (k.hashCode() == hash && key.equals(k));
+    }
+
+    /** A node of the trie. Nodes are immutable. */
+    private abstract static class Node {
+        /**
+         * Alternating keys and values. A null key means that the following element is a child
+         * node, not a value.
+         */
+        final Object[] array;
+
+        /** The number of entries in the subtrie of this node. */
+        final int count;
+
+        Node(Object[] array) {
+            this.array = array;
+            int count = 0;
+            for (int i = 0; i < array.length; i += 2) {
+                count += array[i] == null ? ((Node) array[i + 1]).count : 1;
+            }
+            this.count = count;
+        }
+
+        /** Returns the value of {@code key}, or {@link #NOT_FOUND}. */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * Returns this node with {@code key} mapped to {@code value}, or this node itself if it
+         * already maps {@code key} to {@code value}. Sets {@code added[0]} if {@code key} was not
+         * in this node.
+         */
+        abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * Returns this node without {@code key}, which must be in this node, or null if the result
+         * would be empty.
+         */
+        abstract /*@Nullable*/ Node without(int shift, int hash, Object key);
+    }
+
+    /** An inner node that has a slot for each of the 32 possible values of its hash bits. */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        /** Bit i is set iff slot i is occupied. */
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        /** Returns the index in {@link #array} of the key of the occupied slot {@code bit}. */
+        int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+            }
+            return matches(k, hash, key) ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(shift, hash);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(shift + BITS, hash, key, value, added);
+                return child == v ? this : with(i + 1, child);
+            }
+            if (matches(k, hash, key)) {
+                return v == value ? this : with(i + 1, value);
+            }
+            added[0] = true;
+            Node child = createNode(shift + BITS, k, v, key, hash, value);
+            Object[] newArray = array.clone();
+            newArray[i] = null;
+            newArray[i + 1] = child;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        /*@Nullable*/ Node without(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = ((Node) array[i + 1]).without(shift + BITS, hash, key);
+                if (child != null) {
+                    return with(i + 1, child);
+                }
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        /** Returns a copy of this node with {@code array[i]} replaced by {@code element}. */
+        private BitmapNode with(int i, Object element) {
+            Object[] newArray = array.clone();
+            newArray[i] = element;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        /** Returns a node, at level {@code shift}, that contains the two given entries. */
+        private static Node createNode(
+                int shift, Object key1, Object value1, Object key2, int hash2, Object value2) {
+            int hash1 = key1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.assoc(shift, hash1, key1, value1, ignored)
+                    .assoc(shift, hash2, key2, value2, ignored);
+        }
+    }
+
+    /** A leaf node for keys whose hash codes are all equal. */
+    private static final class CollisionNode extends Node {
+        /** The hash code of all keys in this node. */
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        /** Returns the index of {@code key} in {@link #array}, or -1. */
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node that distinguishes the two hash codes.
+                Node parent =
+                        new BitmapNode(BitmapNode.bit(shift, this.hash), new Object[] {null, this});
+                return parent.assoc(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            added[0] = true;
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        /*@Nullable*/ Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+
+    /** Iterates over the entries of the trie as it was when the iterator was created. */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Cursor cursor = new Cursor(root);
+        private boolean hasNext = cursor.advance();
+        private /*@Nullable*/ K lastKey = null;
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            lastKey = (K) cursor.key;
+            Map.Entry<K, V> result = new MapEntry(lastKey, (V) cursor.value);
+            hasNext = cursor.advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            PersistentHashMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    /** A position in a depth-first traversal of a subtrie. */
+    private static final class Cursor {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] indices = new int[MAX_DEPTH];
+        private int depth;
+
+        /** The key and value of the current entry, after {@link #advance} returned true. */
+        Object key;
+
+        Object value;
+
+        Cursor(/*@Nullable*/ Node node) {
+            if (node == null) {
+                depth = -1;
+            } else {
+                arrays[0] = node.array;
+                depth = 0;
+            }
+        }
+
+        /** Moves to the next entry; returns false if there is none. */
+        boolean advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int i = indices[depth];
+                if (i >= array.length) {
+                    depth--;
+                    continue;
+                }
+                indices[depth] = i + 2;
+                if (array[i] == null) {
+                    depth++;
+                    arrays[depth] = ((Node) array[i + 1]).array;
+                    indices[depth] = 0;
+                } else {
+                    key = array[i];
+                    value = array[i + 1];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** An entry of this map; setting its value updates the map. */
+    private final class MapEntry extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -28,12 +28,15 @@ import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.dataflow.cfg.CFGVisualizer;
+import org.checkerframework.framework.flow.CFGCache;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.stub.StubCache;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -461,42 +464,49 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
-        if (getSubcheckers().size() > 0) {
-            messageStore = new TreeSet<>(checkerMessageComparator);
+        if (replayCheckResults(element, tree)) {
+            return;
         }
+        try {
+            if (getSubcheckers().size() > 0) {
+                messageStore = new TreeSet<>(checkerMessageComparator);
+            }
 
-        // Errors (or other messages) issued via
-        // SourceChecker#message(Diagnostic.Kind, Object, String, Object...)
-        // are stored in messageStore until all checkers have processed this compilation unit.
-        // All other messages are printed immediately.  This includes errors issued because the
-        // checker threw an exception or called ErrorReporter.errorAbort().
+            // Errors (or other messages) issued via
+            // SourceChecker#message(Diagnostic.Kind, Object, String, Object...)
+            // are stored in messageStore until all checkers have processed this compilation unit.
+            // All other messages are printed immediately.  This includes errors issued because the
+            // checker threw an exception or called ErrorReporter.errorAbort().
 
-        // In order to run the next checker on this compilation unit even if the previous
-        // issued errors, the next checker's errsOnLastExit needs to include all errors
-        // issued by previous checkers.
+            // In order to run the next checker on this compilation unit even if the previous
+            // issued errors, the next checker's errsOnLastExit needs to include all errors
+            // issued by previous checkers.
 
-        Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
-        Log log = Log.instance(context);
+            Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+            Log log = Log.instance(context);
 
-        int nerrorsOfAllPreviousCheckers = this.errsOnLastExit;
-        for (BaseTypeChecker subchecker : getSubcheckers()) {
-            subchecker.errsOnLastExit = nerrorsOfAllPreviousCheckers;
-            subchecker.messageStore = messageStore;
-            int errorsBeforeTypeChecking = log.nerrors;
+            int nerrorsOfAllPreviousCheckers = this.errsOnLastExit;
+            for (BaseTypeChecker subchecker : getSubcheckers()) {
+                subchecker.errsOnLastExit = nerrorsOfAllPreviousCheckers;
+                subchecker.messageStore = messageStore;
+                int errorsBeforeTypeChecking = log.nerrors;
 
-            subchecker.typeProcess(element, tree);
+                subchecker.typeProcess(element, tree);
 
-            int errorsAfterTypeChecking = log.nerrors;
-            nerrorsOfAllPreviousCheckers += errorsAfterTypeChecking - errorsBeforeTypeChecking;
-        }
+                int errorsAfterTypeChecking = log.nerrors;
+                nerrorsOfAllPreviousCheckers += errorsAfterTypeChecking - errorsBeforeTypeChecking;
+            }
 
-        this.errsOnLastExit = nerrorsOfAllPreviousCheckers;
-        super.typeProcess(element, tree);
+            this.errsOnLastExit = nerrorsOfAllPreviousCheckers;
+            super.typeProcess(element, tree);
 
-        if (getSubcheckers().size() > 0) {
-            printCollectedMessages(tree.getCompilationUnit());
-            // Update errsOnLastExit to reflect the errors issued.
-            this.errsOnLastExit = log.nerrors;
+            if (getSubcheckers().size() > 0) {
+                printCollectedMessages(tree.getCompilationUnit());
+                // Update errsOnLastExit to reflect the errors issued.
+                this.errsOnLastExit = log.nerrors;
+            }
+        } finally {
+            storeCheckResults();
         }
     }
 
@@ -660,6 +670,18 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         }
     }
 
+    @Override
+    protected void printStats() {
+        super.printStats();
+        getTypeFactory().printCacheStatistics();
+        for (BaseTypeChecker checker : getSubcheckers()) {
+            checker.getTypeFactory().printCacheStatistics();
+        }
+        System.out.println(StubCache.getStatistics());
+        System.out.println(CFGCache.getStatistics());
+        System.out.println(FlowExpressionParseUtil.getCacheStatistics());
+    }
+
     @Override
     protected boolean shouldAddShutdownHook() {
         if (super.shouldAddShutdownHook() || getTypeFactory().getCFGVisualizer() != null) {
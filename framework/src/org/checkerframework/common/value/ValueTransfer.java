@@ -1,9 +1,17 @@
 package org.checkerframework.common.value;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -361,18 +369,13 @@ public class ValueTransfer extends CFTransfer {
         if (lefts == null || rights == null) {
             concat = null;
         } else {
-            concat = new ArrayList<>();
             if (lefts.isEmpty()) {
                 lefts = Collections.singletonList("null");
             }
             if (rights.isEmpty()) {
                 rights = Collections.singletonList("null");
             }
-            for (String left : lefts) {
-                for (String right : rights) {
-                    concat.add(left + right);
-                }
-            }
+            concat = concatenateAll(new LinkedHashSet<>(lefts), new LinkedHashSet<>(rights));
         }
         AnnotationMirror stringVal = atypefactory.createStringAnnotation(concat);
         TypeMirror underlyingType = result.getResultValue().getUnderlyingType();
@@ -380,6 +383,29 @@ public class ValueTransfer extends CFTransfer {
         return new RegularTransferResult<>(newResultValue, result.getRegularStore());
     }
 
+    /**
+     * Returns the distinct concatenations of each of {@code lefts} with each of {@code rights}, or
+     * null if there are more than {@link ValueAnnotatedTypeFactory#MAX_VALUES} of them.
+     */
+    private /*@Nullable*/ List<String> concatenateAll(Set<String> lefts, Set<String> rights) {
+        // Concatenating distinct strings to the same string gives distinct strings, so there are
+        // at least as many results as there are values of either operand.
+        if (lefts.size() > ValueAnnotatedTypeFactory.MAX_VALUES
+                || rights.size() > ValueAnnotatedTypeFactory.MAX_VALUES) {
+            return null;
+        }
+        ResultValues<String> results = new ResultValues<>();
+        for (String left : lefts) {
+            for (String right : rights) {
+                results.add(left + right);
+                if (results.isTooMany()) {
+                    return null;
+                }
+            }
+        }
+        return results.getValues();
+    }
+
     /** binary operations that are analyzed by the value checker */
     enum NumericalBinaryOps {
         ADDITION,
@@ -410,8 +436,17 @@ public class ValueTransfer extends CFTransfer {
             NumericalBinaryOps op,
             TransferInput<CFValue, CFStore> p) {
         if (!isIntRange(leftNode, p) && !isIntRange(rightNode, p)) {
-            List<Number> resultValues = calculateValuesBinaryOp(leftNode, rightNode, op, p);
-            return atypefactory.createNumberAnnotationMirror(resultValues);
+            ResultValues<Number> resultValues =
+                    calculateValuesBinaryOp(leftNode, rightNode, op, p);
+            if (resultValues == null) {
+                return atypefactory.UNKNOWNVAL;
+            } else if (!resultValues.isTooMany()) {
+                return atypefactory.createNumberAnnotationMirror(resultValues.getValues());
+            } else if (resultValues.isIntegral()) {
+                return atypefactory.createIntRangeAnnotation(resultValues.getRange());
+            } else {
+                return atypefactory.UNKNOWNVAL;
+            }
         } else {
             Range resultRange = calculateRangeBinaryOp(leftNode, rightNode, op, p);
             return atypefactory.createIntRangeAnnotation(resultRange);
@@ -477,8 +512,11 @@ public class ValueTransfer extends CFTransfer {
         }
     }
 
-    /** Calculate the possible values after a binary operation between two numerical type nodes */
-    private List<Number> calculateValuesBinaryOp(
+    /**
+     * Calculate the possible values after a binary operation between two numerical type nodes.
+     * Returns null if any value is possible.
+     */
+    private /*@Nullable*/ ResultValues<Number> calculateValuesBinaryOp(
             Node leftNode,
             Node rightNode,
             NumericalBinaryOps op,
@@ -488,8 +526,12 @@ public class ValueTransfer extends CFTransfer {
         if (lefts == null || rights == null) {
             return null;
         }
-        List<Number> resultValues = new ArrayList<>();
+        ResultValues<Number> resultValues = new ResultValues<>();
         for (Number left : lefts) {
+            if (resultValues.isTooMany() && !resultValues.isIntegral()) {
+                // The result is @UnknownVal, whatever the remaining values are.
+                return null;
+            }
             NumberMath<?> nmLeft = NumberMath.getNumberMath(left);
             for (Number right : rights) {
                 switch (op) {
@@ -1200,4 +1242,91 @@ public class ValueTransfer extends CFTransfer {
                 resultValues,
                 transferResult.getResultValue().getUnderlyingType());
     }
+
+    /**
+     * The distinct results of an operation on every combination of the values of its operands.
+     *
+     * <p>Once there are more than {@link ValueAnnotatedTypeFactory#MAX_VALUES} distinct results,
+     * the annotation of the results no longer lists them: it is an {@link
+     * org.checkerframework.common.value.qual.IntRange} for integral results and {@link
+     * UnknownVal} otherwise. From then on, further results are not stored; only the smallest and
+     * largest integral result are tracked, because they are the bounds of the range.
+     *
+     * <p>Like {@link ValueAnnotatedTypeFactory#createNumberAnnotationMirror}, numbers are distinct
+     * if their {@code longValue()}s differ for integral results, and if their {@code
+     * doubleValue()}s differ for floating-point results, whatever their classes are.
+     */
+    private static class ResultValues<T> {
+        /**
+         * The distinct results, in the order in which they were added, by their {@link #key}s;
+         * empty if too many.
+         */
+        private final Map<Object, T> values = new LinkedHashMap<>();
+
+        /** The first result, which determines the kind of annotation of all results. */
+        private /*@Nullable*/ T first = null;
+
+        /** Whether there are more than MAX_VALUES distinct results. */
+        private boolean tooMany = false;
+
+        /** The smallest integral result. */
+        private long min = Long.MAX_VALUE;
+
+        /** The largest integral result. */
+        private long max = Long.MIN_VALUE;
+
+        /** Adds {@code value} to the results. */
+        void add(T value) {
+            if (first == null) {
+                first = value;
+            }
+            if (value instanceof Number) {
+                long longValue = ((Number) value).longValue();
+                min = Math.min(min, longValue);
+                max = Math.max(max, longValue);
+            }
+            if (!tooMany
+                    && values.putIfAbsent(key(value), value) == null
+                    && values.size() > ValueAnnotatedTypeFactory.MAX_VALUES) {
+                tooMany = true;
+                values.clear();
+            }
+        }
+
+        /** Returns the object that is equal for the results that are the same value. */
+        private Object key(T value) {
+            if (!(value instanceof Number)) {
+                return value;
+            } else if (isIntegral()) {
+                return ((Number) value).longValue();
+            } else {
+                return ((Number) value).doubleValue();
+            }
+        }
+
+        /** Returns true if there are more than MAX_VALUES distinct results. */
+        boolean isTooMany() {
+            return tooMany;
+        }
+
+        /** Returns true if the results are integral numbers. */
+        boolean isIntegral() {
+            return first instanceof Integer
+                    || first instanceof Short
+                    || first instanceof Long
+                    || first instanceof Byte;
+        }
+
+        /** Returns the distinct results; only valid if there are not too many of them. */
+        List<T> getValues() {
+            assert !tooMany;
+            return new ArrayList<>(values.values());
+        }
+
+        /** Returns the range of the integral results; only valid if there are any. */
+        Range getRange() {
+            assert isIntegral();
+            return new Range(min, max);
+        }
+    }
 }
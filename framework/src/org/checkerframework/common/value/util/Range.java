@@ -1,9 +1,6 @@
 package org.checkerframework.common.value.util;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import org.checkerframework.dataflow.util.HashCodeUtils;
 
 /**
@@ -270,10 +267,10 @@ public class Range {
             return NOTHING;
         }
 
-        if (this.isWithinHalfLong() && right.isWithinHalfLong()) {
-            // This bound is adequate to guarantee no overflow when using long to evaluate
-            long resultFrom = from + right.from;
-            long resultTo = to + right.to;
+        long resultFrom = from + right.from;
+        long resultTo = to + right.to;
+        if (!additionOverflows(from, right.from, resultFrom)
+                && !additionOverflows(to, right.to, resultTo)) {
             return new Range(resultFrom, resultTo);
         } else {
             BigInteger bigFrom = BigInteger.valueOf(from).add(BigInteger.valueOf(right.from));
@@ -295,10 +292,10 @@ public class Range {
             return NOTHING;
         }
 
-        if (this.isWithinHalfLong() && right.isWithinHalfLong()) {
-            // This bound is adequate to guarantee no overflow when using long to evaluate
-            long resultFrom = from - right.to;
-            long resultTo = to - right.from;
+        long resultFrom = from - right.to;
+        long resultTo = to - right.from;
+        if (!subtractionOverflows(from, right.to, resultFrom)
+                && !subtractionOverflows(to, right.from, resultTo)) {
             return new Range(resultFrom, resultTo);
         } else {
             BigInteger bigFrom = BigInteger.valueOf(from).subtract(BigInteger.valueOf(right.to));
@@ -320,21 +317,27 @@ public class Range {
             return NOTHING;
         }
 
+        long fromFrom = from * right.from;
+        long fromTo = from * right.to;
+        long toFrom = to * right.from;
+        long toTo = to * right.to;
         // These bounds are adequate:  Integer.MAX_VALUE^2 is still a bit less than Long.MAX_VALUE.
-        if (this.isWithinInteger() && right.isWithinInteger()) {
-            List<Long> possibleValues =
-                    Arrays.asList(
-                            from * right.from, from * right.to, to * right.from, to * right.to);
-            return new Range(Collections.min(possibleValues), Collections.max(possibleValues));
+        if ((this.isWithinInteger() && right.isWithinInteger())
+                || !(multiplicationOverflows(from, right.from, fromFrom)
+                        || multiplicationOverflows(from, right.to, fromTo)
+                        || multiplicationOverflows(to, right.from, toFrom)
+                        || multiplicationOverflows(to, right.to, toTo))) {
+            return new Range(
+                    Math.min(Math.min(fromFrom, fromTo), Math.min(toFrom, toTo)),
+                    Math.max(Math.max(fromFrom, fromTo), Math.max(toFrom, toTo)));
         } else {
-            List<BigInteger> bigPossibleValues =
-                    Arrays.asList(
-                            BigInteger.valueOf(from).multiply(BigInteger.valueOf(right.from)),
-                            BigInteger.valueOf(from).multiply(BigInteger.valueOf(right.to)),
-                            BigInteger.valueOf(to).multiply(BigInteger.valueOf(right.from)),
-                            BigInteger.valueOf(to).multiply(BigInteger.valueOf(right.to)));
-            BigInteger bigFrom = Collections.min(bigPossibleValues);
-            BigInteger bigTo = Collections.max(bigPossibleValues);
+            BigInteger bigFromFrom =
+                    BigInteger.valueOf(from).multiply(BigInteger.valueOf(right.from));
+            BigInteger bigFromTo = BigInteger.valueOf(from).multiply(BigInteger.valueOf(right.to));
+            BigInteger bigToFrom = BigInteger.valueOf(to).multiply(BigInteger.valueOf(right.from));
+            BigInteger bigToTo = BigInteger.valueOf(to).multiply(BigInteger.valueOf(right.to));
+            BigInteger bigFrom = bigFromFrom.min(bigFromTo).min(bigToFrom).min(bigToTo);
+            BigInteger bigTo = bigFromFrom.max(bigFromTo).max(bigToFrom).max(bigToTo);
             return bigRangeToLongRange(bigFrom, bigTo);
         }
     }
@@ -516,10 +519,14 @@ public class Range {
         //
         // see http://docs.oracle.com/javase/specs/jls/se7/html/jls-15.html#jls-15.19 for more detail.
         if (right.isWithin(0, 31)) {
-            if (this.isWithinInteger()) {
-                // This bound is adequate to guarantee no overflow when using long to evaluate
-                long resultFrom = from << (from >= 0 ? right.from : right.to);
-                long resultTo = to << (to >= 0 ? right.to : right.from);
+            long fromShift = from >= 0 ? right.from : right.to;
+            long toShift = to >= 0 ? right.to : right.from;
+            long resultFrom = from << fromShift;
+            long resultTo = to << toShift;
+            // Within the Integer type, this bound is adequate to guarantee no overflow when using
+            // long to evaluate. Otherwise, a shift overflows iff shifting back loses bits.
+            if (this.isWithinInteger()
+                    || ((resultFrom >> fromShift) == from && (resultTo >> toShift) == to)) {
                 return new Range(resultFrom, resultTo);
             } else {
                 BigInteger bigFrom =
@@ -853,19 +860,33 @@ public class Range {
         return from >= lb && to <= ub;
     }
 
-    /**
-     * Determines if this range is completely contained in the range that is of half length of the
-     * Long type and centered with 0.
-     */
-    private boolean isWithinHalfLong() {
-        return isWithin(Long.MIN_VALUE >> 1, Long.MAX_VALUE >> 1);
-    }
-
     /** Determines if this range is completely contained in the scope of the Integer type. */
     private boolean isWithinInteger() {
         return isWithin(Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
+    /** Returns true if {@code sum}, which is {@code a + b}, overflowed the long type. */
+    private static boolean additionOverflows(long a, long b, long sum) {
+        // Overflow iff both arguments have the opposite sign of the result.
+        return ((a ^ sum) & (b ^ sum)) < 0;
+    }
+
+    /** Returns true if {@code difference}, which is {@code a - b}, overflowed the long type. */
+    private static boolean subtractionOverflows(long a, long b, long difference) {
+        // Overflow iff the arguments have different signs and the sign of the result differs from
+        // the sign of a.
+        return ((a ^ b) & (a ^ difference)) < 0;
+    }
+
+    /** Returns true if {@code product}, which is {@code a * b}, overflowed the long type. */
+    private static boolean multiplicationOverflows(long a, long b, long product) {
+        // The same test as Math.multiplyExact, without the exception.
+        if (((Math.abs(a) | Math.abs(b)) >>> 31) == 0) {
+            return false;
+        }
+        return (b != 0 && product / b != a) || (a == Long.MIN_VALUE && b == -1);
+    }
+
     private static final BigInteger longWidth =
             BigInteger.valueOf(Long.MAX_VALUE)
                     .subtract(BigInteger.valueOf(Long.MIN_VALUE))
@@ -4,7 +4,6 @@ package org.checkerframework.framework.flow;
 import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +29,7 @@ import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ThisLiteralNode;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.dataflow.util.PersistentHashMap;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -61,7 +61,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     protected final CFAbstractAnalysis<V, S, ?> analysis;
 
     /** Information collected about local variables (including method arguments). */
-    protected final Map<FlowExpressions.LocalVariable, V> localVariableValues;
+    protected Map<FlowExpressions.LocalVariable, V> localVariableValues;
 
     /** Information collected about the current object. */
     protected V thisValue;
@@ -100,24 +100,27 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = new PersistentHashMap<>();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = new PersistentHashMap<>();
+        methodValues = new PersistentHashMap<>();
+        arrayValues = new PersistentHashMap<>();
+        classValues = new PersistentHashMap<>();
         this.sequentialSemantics = sequentialSemantics;
     }
 
-    /** Copy constructor. */
+    /**
+     * Copy constructor. The maps of the copy share their structure with the maps of {@code other},
+     * so copying takes constant time and both stores only pay for the entries they later update.
+     */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = PersistentHashMap.copyOf(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = PersistentHashMap.copyOf(other.fieldValues);
+        methodValues = PersistentHashMap.copyOf(other.methodValues);
+        arrayValues = PersistentHashMap.copyOf(other.arrayValues);
+        classValues = PersistentHashMap.copyOf(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
@@ -188,7 +191,8 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+            Map<FlowExpressions.FieldAccess, V> newFieldValues =
+                    PersistentHashMap.copyOf(fieldValues);
             for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
@@ -222,11 +226,8 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
-                    continue; // remove information completely
+                    newFieldValues.remove(fieldAccess); // remove information completely
                 }
-
-                // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
             fieldValues = newFieldValues;
 
@@ -589,13 +590,14 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+        Map<FlowExpressions.FieldAccess, V> newFieldValues = PersistentHashMap.copyOf(fieldValues);
         for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this, fieldAccess)) {
-                continue; // remove information completely
+                newFieldValues.remove(otherFieldAccess); // remove information completely
+                continue;
             }
             // case 1:
             if (fieldAccess.getField().equals(otherFieldAccess.getField())) {
@@ -606,30 +608,28 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                             newFieldValues.put(otherFieldAccess, newVal);
                         } else {
                             // remove information completely
+                            newFieldValues.remove(otherFieldAccess);
                         }
                         continue;
                     }
                 }
             }
             // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
         fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
+        Map<FlowExpressions.ArrayAccess, V> newArrayValues = PersistentHashMap.copyOf(arrayValues);
         for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
             FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
                 // remove information completely
-                continue;
+                newArrayValues.remove(otherArrayAccess);
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
         arrayValues = newArrayValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues = new PersistentHashMap<>();
     }
 
     /**
@@ -652,42 +652,40 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
+        Map<FlowExpressions.ArrayAccess, V> newArrayValues = PersistentHashMap.copyOf(arrayValues);
         for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
             FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
-                continue; // remove information completely
+                newArrayValues.remove(otherArrayAccess); // remove information completely
+                continue;
             }
             if (canAlias(arrayAccess.getReceiver(), otherArrayAccess.getReceiver())) {
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
-                continue; // remove information completely
+                newArrayValues.remove(otherArrayAccess); // remove information completely
+                continue;
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
         arrayValues = newArrayValues;
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+        Map<FlowExpressions.FieldAccess, V> newFieldValues = PersistentHashMap.copyOf(fieldValues);
         for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
             Receiver receiver = otherFieldAccess.getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess)
                     && receiver.containsOfClass(ArrayAccess.class)) {
                 // remove information completely
-                continue;
+                newFieldValues.remove(otherFieldAccess);
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
         fieldValues = newFieldValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues = new PersistentHashMap<>();
     }
 
     /**
@@ -704,37 +702,32 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        Map<FlowExpressions.FieldAccess, V> newFieldValues = PersistentHashMap.copyOf(fieldValues);
+        for (FlowExpressions.FieldAccess otherFieldAccess : fieldValues.keySet()) {
             // case 1:
             if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                newFieldValues.remove(otherFieldAccess);
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
         fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        Map<FlowExpressions.ArrayAccess, V> newArrayValues = PersistentHashMap.copyOf(arrayValues);
+        for (FlowExpressions.ArrayAccess otherArrayAccess : arrayValues.keySet()) {
             // case 2:
             if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                newArrayValues.remove(otherArrayAccess);
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
         arrayValues = newArrayValues;
 
-        Map<FlowExpressions.MethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.MethodCall, V> e : methodValues.entrySet()) {
-            FlowExpressions.MethodCall otherMethodAccess = e.getKey();
+        Map<FlowExpressions.MethodCall, V> newMethodValues =
+                PersistentHashMap.copyOf(methodValues);
+        for (FlowExpressions.MethodCall otherMethodAccess : methodValues.keySet()) {
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                newMethodValues.remove(otherMethodAccess);
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
         methodValues = newMethodValues;
     }
@@ -799,21 +792,11 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     private S upperBound(S other, boolean shouldWiden) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // local variables that are only part of one store, but not the
+        // other are discarded, as one of store implicitly contains 'top'
+        // for that variable.
+        newStore.localVariableValues =
+                upperBoundOfMaps(localVariableValues, other.localVariableValues, shouldWiden);
 
         // information about the current object
         {
@@ -825,60 +808,47 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
+        // information about fields, arrays, methods and classes that are
+        // only part of one store, but not the other are discarded, as one
+        // store implicitly contains 'top' for them.
+        newStore.fieldValues = upperBoundOfMaps(fieldValues, other.fieldValues, shouldWiden);
+        newStore.arrayValues = upperBoundOfMaps(arrayValues, other.arrayValues, shouldWiden);
+        newStore.methodValues = upperBoundOfMaps(methodValues, other.methodValues, shouldWiden);
+        newStore.classValues = upperBoundOfMaps(classValues, other.classValues, shouldWiden);
+        return newStore;
+    }
+
+    /**
+     * Returns a map from every key of both {@code thisMap} and {@code otherMap} to the upper bound
+     * of its two values, omitting the keys whose upper bound is null.
+     *
+     * <p>If both maps are {@link PersistentHashMap}s, which is the case unless a subclass replaced
+     * them, the parts that the two maps share because one store was copied from the other are
+     * carried over without computing any least upper bounds; the least upper bound of a value with
+     * itself is the value. This does not hold for widening, which may widen a value that did not
+     * change, so when widening, the upper bound of every common entry is computed.
+     */
+    private <K> Map<K, V> upperBoundOfMaps(
+            Map<K, V> thisMap, Map<K, V> otherMap, boolean shouldWiden) {
+        if (thisMap instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+            return ((PersistentHashMap<K, V>) thisMap)
+                    .intersect(
+                            (PersistentHashMap<K, V>) otherMap,
+                            (thisVal, otherVal) ->
+                                    upperBoundOfValues(otherVal, thisVal, shouldWiden),
+                            shouldWiden);
+        }
+        Map<K, V> result = new PersistentHashMap<>();
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (thisMap.containsKey(key)) {
+                V mergedVal = upperBoundOfValues(e.getValue(), thisMap.get(key), shouldWiden);
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
+        return result;
     }
 
     private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -892,34 +862,25 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        return containsAllEntries(localVariableValues, other.localVariableValues)
+                && containsAllEntries(fieldValues, other.fieldValues)
+                && containsAllEntries(arrayValues, other.arrayValues)
+                && containsAllEntries(methodValues, other.methodValues)
+                && containsAllEntries(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code thisMap} contains every entry of {@code otherMap}. Parts that two
+     * {@link PersistentHashMap}s share are not compared entry by entry.
+     */
+    private static <K, V> boolean containsAllEntries(Map<K, V> thisMap, Map<K, V> otherMap) {
+        if (thisMap instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+            return ((PersistentHashMap<K, V>) thisMap)
+                    .containsAllEntriesOf((PersistentHashMap<K, V>) otherMap);
+        }
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (!thisMap.containsKey(key) || !thisMap.get(key).equals(e.getValue())) {
                 return false;
             }
         }
@@ -8,8 +8,12 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
 import org.checkerframework.common.basetype.BaseTypeChecker;
@@ -19,7 +23,9 @@ import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 
 /**
@@ -36,6 +42,21 @@ public class CFCFGBuilder extends CFGBuilder {
     /** Type factory to provide types used during CFG building. */
     protected final AnnotatedTypeFactory factory;
 
+    /**
+     * True if the graph that is being built depends on the checker or its type factory in a way
+     * that prevents sharing it with other checkers through the {@link CFGCache}.
+     */
+    private boolean isCheckerSpecific;
+
+    /** The artificial trees of the graph that is being built, and their enclosing elements. */
+    private List<Pair<Tree, Element>> artificialTrees;
+
+    /**
+     * The {@code assert} statements of the graph that is being built that have a detail message,
+     * each with the result of {@link #assumeAssertionsActivatedForAssertTree} for the checker.
+     */
+    private List<Pair<AssertTree, Boolean>> assumedAssertions;
+
     public CFCFGBuilder(BaseTypeChecker checker, AnnotatedTypeFactory factory) {
         super(
                 checker.hasOption("assumeAssertionsAreEnabled"),
@@ -48,22 +69,135 @@ public class CFCFGBuilder extends CFGBuilder {
         this.factory = factory;
     }
 
-    /** Build the control flow graph of some code. */
+    /**
+     * Build the control flow graph of some code.
+     *
+     * <p>The graph is taken from the {@link CFGCache} if another checker of the compilation already
+     * built it with a builder of the same class and options, and if the type factory of this
+     * builder gives the same answers as the other checker's factory for the declaration
+     * annotations that the graph depends on, and if {@link #assumeAssertionsActivatedForAssertTree}
+     * gives the same answers for the checker of this builder as for the other checker for the
+     * {@code assert} statements of the graph. The artificial trees of a graph taken from the cache
+     * are registered with the type factory of this builder.
+     *
+     * <p>A graph is not added to the cache if it contains an enhanced for loop, whose artificial
+     * variables have annotated types computed by the type factory.
+     */
     @Override
     public ControlFlowGraph run(
             CompilationUnitTree root, ProcessingEnvironment env, UnderlyingAST underlyingAST) {
         declaredClasses.clear();
         declaredLambdas.clear();
 
+        CFGCache cache = CFGCache.instance(env, root);
+        String configuration =
+                getClass().getName()
+                        + ":"
+                        + assumeAssertionsEnabled
+                        + ":"
+                        + assumeAssertionsDisabled;
+        CFGCache.Entry cached = cache.get(underlyingAST, configuration);
+        if (cached != null && isValidForFactory(cached)) {
+            CFGCache.recordLookup(true);
+            declaredClasses.addAll(cached.declaredClasses);
+            declaredLambdas.addAll(cached.declaredLambdas);
+            for (Pair<Tree, Element> artificialTree : cached.artificialTrees) {
+                factory.setPathHack(artificialTree.first, artificialTree.second);
+            }
+            return cached.cfg;
+        }
+        CFGCache.recordLookup(false);
+
+        isCheckerSpecific = false;
+        artificialTrees = new ArrayList<>();
+        assumedAssertions = new ArrayList<>();
+        RecordingAnnotationProvider annotationProvider = new RecordingAnnotationProvider();
+
         CFTreeBuilder builder = new CFTreeBuilder(env);
         PhaseOneResult phase1result =
                 new CFCFGTranslationPhaseOne()
-                        .process(root, env, underlyingAST, exceptionalExitLabel, builder, factory);
+                        .process(
+                                root,
+                                env,
+                                underlyingAST,
+                                exceptionalExitLabel,
+                                builder,
+                                annotationProvider);
         ControlFlowGraph phase2result = new CFGTranslationPhaseTwo().process(phase1result);
         ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
+
+        if (!isCheckerSpecific) {
+            cache.put(
+                    underlyingAST,
+                    new CFGCache.Entry(
+                            configuration,
+                            underlyingAST.getKind(),
+                            phase3result,
+                            new ArrayList<>(declaredClasses),
+                            new ArrayList<>(declaredLambdas),
+                            artificialTrees,
+                            assumedAssertions,
+                            annotationProvider.present,
+                            annotationProvider.absent));
+        }
+        artificialTrees = null;
+        assumedAssertions = null;
         return phase3result;
     }
 
+    /**
+     * Returns true if the checker and the type factory of this builder give the same answers as
+     * those that built the cached graph {@code entry} for the {@code assert} statements and the
+     * declaration annotations that it depends on.
+     */
+    private boolean isValidForFactory(CFGCache.Entry entry) {
+        for (Pair<AssertTree, Boolean> assertion : entry.assumedAssertions) {
+            if (assumeAssertionsActivatedForAssertTree(checker, assertion.first)
+                    != assertion.second) {
+                return false;
+            }
+        }
+        for (Pair<Element, Class<? extends Annotation>> query : entry.presentDeclAnnotations) {
+            if (factory.getDeclAnnotation(query.first, query.second) == null) {
+                return false;
+            }
+        }
+        for (Pair<Element, Class<? extends Annotation>> query : entry.absentDeclAnnotations) {
+            if (factory.getDeclAnnotation(query.first, query.second) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An annotation provider that delegates to the type factory of this builder and records the
+     * declaration annotations that the graph that is being built depends on.
+     */
+    private class RecordingAnnotationProvider implements AnnotationProvider {
+        /** The declaration annotations that were found. */
+        final List<Pair<Element, Class<? extends Annotation>>> present = new ArrayList<>();
+
+        /** The declaration annotations that were not found. */
+        final List<Pair<Element, Class<? extends Annotation>>> absent = new ArrayList<>();
+
+        @Override
+        public AnnotationMirror getDeclAnnotation(Element elt, Class<? extends Annotation> anno) {
+            AnnotationMirror result = factory.getDeclAnnotation(elt, anno);
+            List<Pair<Element, Class<? extends Annotation>>> queries =
+                    result != null ? present : absent;
+            queries.add(Pair.of(elt, anno));
+            return result;
+        }
+
+        @Override
+        public AnnotationMirror getAnnotationMirror(
+                Tree tree, Class<? extends Annotation> target) {
+            isCheckerSpecific = true;
+            return factory.getAnnotationMirror(tree, target);
+        }
+    }
+
     /*
      * Given a SourceChecker and an AssertTree, returns whether the AssertTree
      * uses an @AssumeAssertion string that is relevant to the SourceChecker.
@@ -89,7 +223,11 @@ public class CFCFGBuilder extends CFGBuilder {
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
-            if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
+            boolean activated = assumeAssertionsActivatedForAssertTree(checker, tree);
+            if (tree.getDetail() != null && assumedAssertions != null) {
+                assumedAssertions.add(Pair.of(tree, activated));
+            }
+            if (activated) {
                 return true;
             }
             return super.assumeAssertionsEnabledFor(tree);
@@ -99,14 +237,19 @@ public class CFCFGBuilder extends CFGBuilder {
         public void handleArtificialTree(Tree tree) {
             // Record the method or class that encloses the newly created tree.
             MethodTree enclosingMethod = TreeUtils.enclosingMethod(getCurrentPath());
+            Element enclosingElement = null;
             if (enclosingMethod != null) {
-                Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
-                factory.setPathHack(tree, methodElement);
+                enclosingElement = TreeUtils.elementFromDeclaration(enclosingMethod);
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
-                    Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
-                    factory.setPathHack(tree, classElement);
+                    enclosingElement = TreeUtils.elementFromDeclaration(enclosingClass);
+                }
+            }
+            if (enclosingElement != null) {
+                factory.setPathHack(tree, enclosingElement);
+                if (artificialTrees != null) {
+                    artificialTrees.add(Pair.of(tree, enclosingElement));
                 }
             }
         }
@@ -114,6 +257,7 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(
                 MethodInvocationTree iteratorCall, VariableElement variableElement) {
+            isCheckerSpecific = true;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -138,6 +282,7 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(
                 ExpressionTree expression, VariableElement variableElement) {
+            isCheckerSpecific = true;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
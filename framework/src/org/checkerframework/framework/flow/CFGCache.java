@@ -0,0 +1,184 @@
+package org.checkerframework.framework.flow;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.AssertTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * The control-flow graphs built for the current compilation unit, shared by all checkers of a
+ * compilation. A compound checker and its subcheckers, the checkers of an aggregate checker, and
+ * several checkers passed to the same javac invocation all analyze the same methods; each of them
+ * runs its own dataflow analysis, but they can use the same control-flow graph.
+ *
+ * <p>A graph is only shared by {@link CFCFGBuilder}s of the same class and with the same options,
+ * and only if its construction did not depend on the checker in a way that {@link CFCFGBuilder}
+ * cannot validate; see {@link CFCFGBuilder#run}.
+ *
+ * <p>The cache holds the graphs of one compilation unit at a time, and is emptied when a builder
+ * asks for a graph of another compilation unit.
+ */
+public class CFGCache {
+
+    /** The key of the cache in the javac context of a compilation. */
+    private static final Context.Key<CFGCache> cfgCacheKey = new Context.Key<>();
+
+    /** The number of control-flow graphs that were found in a cache. */
+    private static int hits = 0;
+
+    /** The number of control-flow graphs that were not found in a cache. */
+    private static int misses = 0;
+
+    /** The compilation unit whose control-flow graphs are cached. */
+    private /*@Nullable*/ CompilationUnitTree root = null;
+
+    /** Maps the code of an underlying AST to the cached control-flow graphs of that code. */
+    private final Map<Tree, List<Entry>> entries = new IdentityHashMap<>();
+
+    private CFGCache() {}
+
+    /**
+     * Returns the cache of the compilation of {@code env}, holding the control-flow graphs of
+     * {@code root}.
+     */
+    static CFGCache instance(ProcessingEnvironment env, CompilationUnitTree root) {
+        Context context = ((JavacProcessingEnvironment) env).getContext();
+        CFGCache cache = context.get(cfgCacheKey);
+        if (cache == null) {
+            cache = new CFGCache();
+            context.put(cfgCacheKey, cache);
+        }
+        if (cache.root != root) {
+            cache.root = root;
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached control-flow graph of {@code underlyingAST} that was built by a builder
+     * with the given configuration, or null if there is none.
+     */
+    /*@Nullable*/ Entry get(UnderlyingAST underlyingAST, String configuration) {
+        List<Entry> list = entries.get(underlyingAST.getCode());
+        if (list != null) {
+            for (Entry entry : list) {
+                if (entry.kind == underlyingAST.getKind()
+                        && entry.configuration.equals(configuration)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Adds {@code entry}, which replaces any cached graph of the same code and configuration. */
+    void put(UnderlyingAST underlyingAST, Entry entry) {
+        List<Entry> list = entries.get(underlyingAST.getCode());
+        if (list == null) {
+            list = new ArrayList<>(1);
+            entries.put(underlyingAST.getCode(), list);
+        }
+        list.remove(get(underlyingAST, entry.configuration));
+        list.add(entry);
+    }
+
+    /** Records whether a lookup found a control-flow graph that could be used. */
+    static void recordLookup(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /** @return the number of control-flow graphs that were found in a cache */
+    public static int getHits() {
+        return hits;
+    }
+
+    /** @return the number of control-flow graphs that were not found in a cache */
+    public static int getMisses() {
+        return misses;
+    }
+
+    /** @return a one-line summary of the hits and misses of the caches */
+    public static String getStatistics() {
+        return "cfgCache: hits " + hits + ", misses " + misses;
+    }
+
+    /**
+     * A control-flow graph, together with what its builder reported besides the graph and the
+     * answers of the annotation provider that the graph depends on.
+     */
+    static class Entry {
+        /** The class and options of the builder that built the graph. */
+        final String configuration;
+
+        /** The kind of the underlying AST of the graph. */
+        final UnderlyingAST.Kind kind;
+
+        /** The control-flow graph. */
+        final ControlFlowGraph cfg;
+
+        /** The classes declared in the code of the graph. */
+        final List<ClassTree> declaredClasses;
+
+        /** The lambdas declared in the code of the graph. */
+        final List<LambdaExpressionTree> declaredLambdas;
+
+        /** The artificial trees of the graph, with the element that encloses each of them. */
+        final List<Pair<Tree, Element>> artificialTrees;
+
+        /**
+         * The {@code assert} statements of the graph that have a detail message, and whether an
+         * {@code @AssumeAssertion} string made the checker that built the graph assume each of
+         * them to be enabled.
+         */
+        final List<Pair<AssertTree, Boolean>> assumedAssertions;
+
+        /** The declaration annotations that were present when the graph was built. */
+        final List<Pair<Element, Class<? extends Annotation>>> presentDeclAnnotations;
+
+        /** The declaration annotations that were absent when the graph was built. */
+        final List<Pair<Element, Class<? extends Annotation>>> absentDeclAnnotations;
+
+        Entry(
+                String configuration,
+                UnderlyingAST.Kind kind,
+                ControlFlowGraph cfg,
+                List<ClassTree> declaredClasses,
+                List<LambdaExpressionTree> declaredLambdas,
+                List<Pair<Tree, Element>> artificialTrees,
+                List<Pair<AssertTree, Boolean>> assumedAssertions,
+                List<Pair<Element, Class<? extends Annotation>>> presentDeclAnnotations,
+                List<Pair<Element, Class<? extends Annotation>>> absentDeclAnnotations) {
+            this.configuration = configuration;
+            this.kind = kind;
+            this.cfg = cfg;
+            this.declaredClasses = declaredClasses;
+            this.declaredLambdas = declaredLambdas;
+            this.artificialTrees = artificialTrees;
+            this.assumedAssertions = assumedAssertions;
+            this.presentDeclAnnotations = presentDeclAnnotations;
+            this.absentDeclAnnotations = absentDeclAnnotations;
+        }
+    }
+}
@@ -26,6 +26,11 @@ import javax.tools.Diagnostic.Kind;
  *
  * <p>This class delegates {@code AbstractTypeProcessor} responsibilities to each component checker.
  *
+ * <p>The component checkers run one after another on each compilation unit, never concurrently.
+ * They share the compiler's symbol table, type utilities, and log, none of which is thread-safe:
+ * completing a symbol, querying {@code Types}, or reporting a diagnostic mutates shared state. To
+ * check the same code with several checkers in parallel, run them in separate compilations.
+ *
  * <p>Checker writers need to subclass this class and only override {@link #getSupportedCheckers()}
  * to indicate the classes of the checkers to be bundled.
  */
@@ -99,22 +104,31 @@ public abstract class AggregateChecker extends SourceChecker {
     public final void typeProcess(TypeElement element, TreePath tree) {
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         Log log = Log.instance(context);
-        if (log.nerrors > this.errsOnLastExit) {
-            // If there is a Java error, do not perform any
-            // of the component type checks, but come back
-            // for the next compilation unit.
-            this.errsOnLastExit = log.nerrors;
-            return;
-        }
-        if (!allCheckersInited) {
-            // If there was an initialization problem, an
-            // error was already output. Just quit.
+        if (replayCheckResults(element, tree)) {
             return;
         }
-        for (SourceChecker checker : checkers) {
-            checker.errsOnLastExit = this.errsOnLastExit;
-            checker.typeProcess(element, tree);
-            this.errsOnLastExit = checker.errsOnLastExit;
+        try {
+            if (log.nerrors > this.errsOnLastExit) {
+                // If there is a Java error, do not perform any
+                // of the component type checks, but come back
+                // for the next compilation unit.
+                this.errsOnLastExit = log.nerrors;
+                markCheckResultsIncomplete();
+                return;
+            }
+            if (!allCheckersInited) {
+                // If there was an initialization problem, an
+                // error was already output. Just quit.
+                markCheckResultsIncomplete();
+                return;
+            }
+            for (SourceChecker checker : checkers) {
+                checker.errsOnLastExit = this.errsOnLastExit;
+                checker.typeProcess(element, tree);
+                this.errsOnLastExit = checker.errsOnLastExit;
+            }
+        } finally {
+            storeCheckResults();
         }
     }
 
@@ -0,0 +1,828 @@
+package org.checkerframework.framework.source;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.UnionType;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.javacutil.ErrorReporter;
+
+/**
+ * The results of checking each top-level class in earlier compilations, used by the {@code
+ * -AincrementalCache} option to avoid checking classes again whose results cannot have changed.
+ *
+ * <p>The store holds one file per top-level class in a directory for the checker. The file records
+ * the diagnostics that the checker and its subcheckers issued for the class, and a fingerprint of
+ * everything the diagnostics depend on:
+ *
+ * <ul>
+ *   <li>the source code of the compilation unit of the class,
+ *   <li>the signatures of the declarations that the class refers to and of their supertypes,
+ *   <li>the annotations of the packages of the class and of these declarations, which are written
+ *       in {@code package-info.java} files and may change the defaults of the checker,
+ *   <li>the javac options, the checker options, the stub files named by {@code -Astubs}, and the
+ *       jar files or directories that the checker was loaded from.
+ * </ul>
+ *
+ * A signature includes the modifiers, types, annotations and constant values of a class and all its
+ * members. The signatures of classes read from a jar file, including the annotated JDK, are
+ * represented by the size and modification time of the jar file.
+ *
+ * <p>If the fingerprint of a class equals the recorded one, {@link #replay} reissues the recorded
+ * diagnostics, at the same positions, and the class is not checked. Otherwise the class is checked
+ * and its diagnostics are recorded and stored. Results are only stored if the class was checked
+ * completely by all checkers, without javac errors and without exceptions.
+ */
+class CheckResultStore {
+
+    /** The version of the format of the stored files and of the fingerprints. */
+    private static final String FORMAT_VERSION = "2";
+
+    /** The directory that holds the stored results of the checker. */
+    private final File directory;
+
+    /** The checker that runs all others, whose results are stored. */
+    private final SourceChecker checker;
+
+    /** The fingerprint of the configuration of the checker, computed once per compilation. */
+    private /*@Nullable*/ String configurationFingerprint = null;
+
+    /** The fingerprints of the signatures of top-level classes in this compilation. */
+    private final Map<Element, String> signatureFingerprints = new IdentityHashMap<>();
+
+    /** The fingerprints of the jar files that classes were read from. */
+    private final Map<String, String> jarFingerprints = new HashMap<>();
+
+    /** The class whose results are being recorded, or null if none. */
+    private /*@Nullable*/ TypeElement recordedClass = null;
+
+    /** The fingerprint of {@link #recordedClass}. */
+    private /*@Nullable*/ String recordedFingerprint = null;
+
+    /** The number of nested calls of {@link #replay} for {@link #recordedClass}. */
+    private int recordingDepth = 0;
+
+    /** The messages recorded for {@link #recordedClass}. */
+    private final List<String> recordedMessages = new ArrayList<>();
+
+    /** The number of errors that were recorded for {@link #recordedClass}. */
+    private int recordedErrors = 0;
+
+    /** The number of javac errors when the recording started. */
+    private int errorsBeforeRecording = 0;
+
+    /** False if the results of {@link #recordedClass} must not be stored. */
+    private boolean cacheable = false;
+
+    /**
+     * Creates a store of the results of {@code checker} in a subdirectory of {@code
+     * cacheDirectory}.
+     */
+    CheckResultStore(SourceChecker checker, File cacheDirectory) {
+        this.checker = checker;
+        this.directory = new File(cacheDirectory, checker.getClass().getName());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Replaying and recording
+    ///
+
+    /**
+     * Reissues the stored diagnostics of the top-level class {@code element} and returns true if
+     * its fingerprint is unchanged. Otherwise, starts recording the diagnostics of the class and
+     * returns false; the caller must then check the class and call {@link #finish} afterwards.
+     *
+     * @param element the top-level class
+     * @param path the path to the class
+     * @param mayReplay false if the checkers will not check the class because of javac errors; then
+     *     nothing is replayed or stored
+     */
+    boolean replay(TypeElement element, TreePath path, boolean mayReplay) {
+        if (recordingDepth > 0 && recordedClass == element) {
+            recordingDepth++;
+            return false;
+        }
+
+        recordedClass = element;
+        recordingDepth = 1;
+        recordedMessages.clear();
+        recordedErrors = 0;
+        errorsBeforeRecording = log().nerrors;
+        recordedFingerprint = mayReplay ? fingerprint(path) : null;
+        cacheable = recordedFingerprint != null;
+
+        if (recordedFingerprint == null) {
+            return false;
+        }
+        List<String> lines = read(element);
+        if (lines == null || lines.isEmpty() || !lines.get(0).equals(recordedFingerprint)) {
+            return false;
+        }
+        List<Runnable> messages = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            Runnable message = parseMessage(line, path.getCompilationUnit());
+            if (message == null) {
+                // The stored file is corrupt, or a position could not be found again.
+                return false;
+            }
+            messages.add(message);
+        }
+
+        recordedClass = null;
+        recordingDepth = 0;
+        for (Runnable message : messages) {
+            message.run();
+        }
+        return true;
+    }
+
+    /**
+     * Ends a call to {@link #replay} that returned false. When the outermost call ends, stores the
+     * recorded diagnostics if the class was checked completely.
+     */
+    void finish() {
+        if (recordingDepth == 0 || --recordingDepth > 0) {
+            return;
+        }
+        TypeElement element = recordedClass;
+        recordedClass = null;
+        if (element == null
+                || !cacheable
+                || log().nerrors != errorsBeforeRecording + recordedErrors) {
+            // Some errors were not issued through the checker, such as javac errors.
+            return;
+        }
+        List<String> lines = new ArrayList<>(recordedMessages.size() + 1);
+        lines.add(recordedFingerprint);
+        lines.addAll(recordedMessages);
+        write(element, lines);
+    }
+
+    /** Prevents the results of the class that is being checked from being stored. */
+    void markIncomplete() {
+        cacheable = false;
+    }
+
+    /** Returns true if the diagnostics of a class are being recorded. */
+    boolean isRecording() {
+        return recordingDepth > 0;
+    }
+
+    /**
+     * Records a diagnostic that was issued for the class that is being checked.
+     *
+     * @param kind the kind of the diagnostic
+     * @param message the text of the diagnostic
+     * @param source the tree or element the diagnostic was issued for, or null if it has no
+     *     position
+     * @param root the compilation unit of the class that is being checked
+     */
+    void record(
+            Diagnostic.Kind kind,
+            CharSequence message,
+            /*@Nullable*/ Object source,
+            CompilationUnitTree root) {
+        if (!isRecording() || !cacheable) {
+            return;
+        }
+        if (kind == Diagnostic.Kind.ERROR) {
+            recordedErrors++;
+        }
+        Trees trees = Trees.instance(checker.getProcessingEnvironment());
+        char sourceKind;
+        Tree tree;
+        if (source == null) {
+            sourceKind = 'N';
+            tree = null;
+        } else if (source instanceof Element) {
+            sourceKind = 'E';
+            TreePath path = trees.getPath((Element) source);
+            if (path == null || path.getCompilationUnit() != root) {
+                cacheable = false;
+                return;
+            }
+            tree = path.getLeaf();
+        } else {
+            sourceKind = 'T';
+            tree = (Tree) source;
+        }
+
+        StringBuilder line = new StringBuilder();
+        line.append(kind.name()).append('\t').append(sourceKind).append('\t');
+        if (tree == null) {
+            line.append("-\t-1\t-1");
+        } else {
+            SourcePositions positions = trees.getSourcePositions();
+            line.append(tree.getKind().name())
+                    .append('\t')
+                    .append(positions.getStartPosition(root, tree))
+                    .append('\t')
+                    .append(positions.getEndPosition(root, tree));
+        }
+        line.append('\t').append(escape(message.toString()));
+        recordedMessages.add(line.toString());
+    }
+
+    /**
+     * Returns an action that reissues the diagnostic described by {@code line}, or null if the
+     * line is malformed or the tree it refers to is not found in {@code root}.
+     */
+    private /*@Nullable*/ Runnable parseMessage(String line, final CompilationUnitTree root) {
+        String[] parts = line.split("\t", 6);
+        if (parts.length != 6) {
+            return null;
+        }
+        final Diagnostic.Kind kind;
+        final long start;
+        final long end;
+        try {
+            kind = Diagnostic.Kind.valueOf(parts[0]);
+            start = Long.parseLong(parts[3]);
+            end = Long.parseLong(parts[4]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final String message = unescape(parts[5]);
+        final Trees trees = Trees.instance(checker.getProcessingEnvironment());
+
+        switch (parts[1]) {
+            case "N":
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        checker.messager.printMessage(kind, message);
+                    }
+                };
+            case "T":
+            case "E":
+                final TreePath path = findTree(root, parts[2], start, end);
+                if (path == null) {
+                    return null;
+                }
+                if (parts[1].equals("T")) {
+                    return new Runnable() {
+                        @Override
+                        public void run() {
+                            trees.printMessage(kind, message, path.getLeaf(), root);
+                        }
+                    };
+                }
+                final Element element = trees.getElement(path);
+                if (element == null) {
+                    return null;
+                }
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        checker.messager.printMessage(kind, message, element);
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the path to the first tree in {@code root} of the given kind and with the given start
+     * and end positions, or null if there is none.
+     */
+    private /*@Nullable*/ TreePath findTree(
+            final CompilationUnitTree root, final String kind, final long start, final long end) {
+        final SourcePositions positions =
+                Trees.instance(checker.getProcessingEnvironment()).getSourcePositions();
+        final TreePath[] result = new TreePath[1];
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree == null || result[0] != null) {
+                    return null;
+                }
+                long treeStart = positions.getStartPosition(root, tree);
+                long treeEnd = positions.getEndPosition(root, tree);
+                if (treeStart == start && treeEnd == end && tree.getKind().name().equals(kind)) {
+                    result[0] = new TreePath(getCurrentPath(), tree);
+                    return null;
+                }
+                if (treeStart != -1 && (treeStart > start || (treeEnd != -1 && treeEnd < end))) {
+                    // The tree does not enclose the position.
+                    return null;
+                }
+                return super.scan(tree, p);
+            }
+        }.scan(root, null);
+        return result[0];
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Fingerprints
+    ///
+
+    /**
+     * Returns the fingerprint of the top-level class at {@code path}, or null if it cannot be
+     * computed.
+     */
+    private /*@Nullable*/ String fingerprint(TreePath path) {
+        CharSequence source;
+        try {
+            source = path.getCompilationUnit().getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT_VERSION).append('\n');
+        sb.append(configurationFingerprint()).append('\n');
+        sb.append(hash(source.toString())).append('\n');
+        for (Map.Entry<String, Element> dependency :
+                dependencies((JCTree) path.getLeaf()).entrySet()) {
+            sb.append(dependency.getKey())
+                    .append(' ')
+                    .append(signatureFingerprint(dependency.getValue()))
+                    .append('\n');
+        }
+        return hash(sb.toString());
+    }
+
+    /**
+     * Returns the top-level classes that {@code tree} refers to and their supertypes, and the
+     * packages of these classes, sorted by name. The name of a package is preceded by {@code
+     * "package "}.
+     */
+    private Map<String, Element> dependencies(JCTree tree) {
+        final Set<Element> direct = new HashSet<>();
+        final Set<TypeMirror> visitedTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null) {
+                    return;
+                }
+                super.scan(tree);
+                addTypeDependencies(tree.type, direct, visitedTypes);
+                Symbol symbol = TreeInfo.symbol(tree);
+                if (symbol != null) {
+                    addDependency(symbol, direct);
+                }
+            }
+        }.scan(tree);
+
+        Map<String, Element> result = new TreeMap<>();
+        List<Element> worklist = new ArrayList<>(direct);
+        while (!worklist.isEmpty()) {
+            Element dependency = worklist.remove(worklist.size() - 1);
+            String name = ((TypeElement) dependency).getQualifiedName().toString();
+            if (result.put(name, dependency) != null) {
+                continue;
+            }
+            PackageElement pkg = (PackageElement) dependency.getEnclosingElement();
+            result.put("package " + pkg.getQualifiedName(), pkg);
+            if (isFromJar(dependency)) {
+                continue;
+            }
+            Set<Element> supertypes = new HashSet<>();
+            addSupertypeDependencies(dependency, supertypes);
+            worklist.addAll(supertypes);
+        }
+        return result;
+    }
+
+    /** Adds the top-level classes of the supertypes of {@code element} and its member classes. */
+    private static void addSupertypeDependencies(Element element, Set<Element> dependencies) {
+        if (element instanceof TypeElement) {
+            TypeElement type = (TypeElement) element;
+            addDependency(type.getSuperclass(), dependencies);
+            for (TypeMirror supertype : type.getInterfaces()) {
+                addDependency(supertype, dependencies);
+            }
+        }
+        for (Element member : element.getEnclosedElements()) {
+            if (member.getKind().isClass() || member.getKind().isInterface()) {
+                addSupertypeDependencies(member, dependencies);
+            }
+        }
+    }
+
+    /** Adds the top-level class of the class of {@code type}, if it is a declared type. */
+    private static void addDependency(TypeMirror type, Set<Element> dependencies) {
+        if (type instanceof DeclaredType) {
+            addDependency(((DeclaredType) type).asElement(), dependencies);
+        }
+    }
+
+    /** Adds the top-level class that declares {@code element}, if there is one. */
+    private static void addDependency(Element element, Set<Element> dependencies) {
+        Element outermost = null;
+        for (Element e = element; e != null; e = e.getEnclosingElement()) {
+            if (e instanceof PackageElement) {
+                break;
+            }
+            if (e instanceof TypeElement) {
+                outermost = e;
+            }
+        }
+        if (outermost != null) {
+            dependencies.add(outermost);
+        }
+    }
+
+    /** Adds the top-level classes of all classes that occur in {@code type}. */
+    private static void addTypeDependencies(
+            /*@Nullable*/ TypeMirror type, Set<Element> dependencies, Set<TypeMirror> visited) {
+        if (type == null || !visited.add(type)) {
+            return;
+        }
+        switch (type.getKind()) {
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                addDependency(declared.asElement(), dependencies);
+                addTypeDependencies(declared.getEnclosingType(), dependencies, visited);
+                for (TypeMirror argument : declared.getTypeArguments()) {
+                    addTypeDependencies(argument, dependencies, visited);
+                }
+                break;
+            case ARRAY:
+                addTypeDependencies(((ArrayType) type).getComponentType(), dependencies, visited);
+                break;
+            case WILDCARD:
+                addTypeDependencies(((WildcardType) type).getExtendsBound(), dependencies, visited);
+                addTypeDependencies(((WildcardType) type).getSuperBound(), dependencies, visited);
+                break;
+            case TYPEVAR:
+                addTypeDependencies(((TypeVariable) type).getUpperBound(), dependencies, visited);
+                addTypeDependencies(((TypeVariable) type).getLowerBound(), dependencies, visited);
+                break;
+            case INTERSECTION:
+                for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+                    addTypeDependencies(bound, dependencies, visited);
+                }
+                break;
+            case UNION:
+                for (TypeMirror alternative : ((UnionType) type).getAlternatives()) {
+                    addTypeDependencies(alternative, dependencies, visited);
+                }
+                break;
+            case EXECUTABLE:
+                ExecutableType executable = (ExecutableType) type;
+                addTypeDependencies(executable.getReturnType(), dependencies, visited);
+                for (TypeMirror parameter : executable.getParameterTypes()) {
+                    addTypeDependencies(parameter, dependencies, visited);
+                }
+                for (TypeMirror thrown : executable.getThrownTypes()) {
+                    addTypeDependencies(thrown, dependencies, visited);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Returns true if the top-level class {@code element} was read from a jar file. */
+    private static boolean isFromJar(Element element) {
+        return jarOf(element) != null;
+    }
+
+    /**
+     * Returns the URI of the jar file or other container that the top-level class {@code element}
+     * was read from, or null if it was read from a source file or from a directory.
+     */
+    private static /*@Nullable*/ String jarOf(Element element) {
+        if (!(element instanceof Symbol.ClassSymbol)) {
+            return null;
+        }
+        JavaFileObject classfile = ((Symbol.ClassSymbol) element).classfile;
+        if (classfile == null || classfile.getKind() != JavaFileObject.Kind.CLASS) {
+            return null;
+        }
+        URI uri = classfile.toUri();
+        if ("file".equals(uri.getScheme())) {
+            return null;
+        }
+        String container = uri.toString();
+        int separator = container.indexOf("!/");
+        return separator == -1 ? uri.getScheme() : container.substring(0, separator);
+    }
+
+    /**
+     * Returns the fingerprint of the signature of the top-level class {@code element}, or of the
+     * annotations of the package {@code element}.
+     */
+    private String signatureFingerprint(Element element) {
+        String fingerprint = signatureFingerprints.get(element);
+        if (fingerprint == null) {
+            String jar = jarOf(element);
+            if (element instanceof PackageElement) {
+                // The classes of a package are fingerprinted separately, if they are dependencies.
+                fingerprint = hash(element.getAnnotationMirrors().toString());
+            } else if (jar != null) {
+                fingerprint = jarFingerprint(jar);
+            } else {
+                StringBuilder signature = new StringBuilder();
+                appendSignature(element, signature);
+                fingerprint = hash(signature.toString());
+            }
+            signatureFingerprints.put(element, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /** Returns the fingerprint of the jar file or other container with the given URI. */
+    private String jarFingerprint(String jar) {
+        String fingerprint = jarFingerprints.get(jar);
+        if (fingerprint == null) {
+            File file = null;
+            if (jar.startsWith("jar:file:")) {
+                try {
+                    file = new File(new URI(jar.substring("jar:".length())));
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    file = null;
+                }
+            }
+            if (file != null) {
+                fingerprint = jar + " " + file.length() + " " + file.lastModified();
+            } else {
+                // For example, the run-time image of the JDK.
+                fingerprint = jar + " " + System.getProperty("java.version");
+            }
+            jarFingerprints.put(jar, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Appends the modifiers, type, annotations and constant value of {@code element}, and the
+     * signatures of its members, to {@code sb}.
+     */
+    private static void appendSignature(Element element, StringBuilder sb) {
+        sb.append(element.getKind())
+                .append(' ')
+                .append(element.getModifiers())
+                .append(' ')
+                .append(element.getSimpleName())
+                .append(' ')
+                .append(element.asType())
+                .append(' ')
+                .append(element.getAnnotationMirrors());
+        if (element instanceof Symbol) {
+            for (Attribute.TypeCompound annotation : ((Symbol) element).getRawTypeAttributes()) {
+                sb.append(' ').append(annotation).append(annotation.position);
+            }
+        }
+        if (element instanceof TypeElement) {
+            TypeElement type = (TypeElement) element;
+            sb.append(" extends ").append(type.getSuperclass());
+            sb.append(" implements ").append(type.getInterfaces());
+            for (TypeParameterElement parameter : type.getTypeParameters()) {
+                sb.append(' ').append(parameter.getBounds());
+            }
+        } else if (element instanceof ExecutableElement) {
+            ExecutableElement method = (ExecutableElement) element;
+            sb.append(" throws ")
+                    .append(method.getThrownTypes())
+                    .append(" default ")
+                    .append(method.getDefaultValue());
+            for (TypeParameterElement parameter : method.getTypeParameters()) {
+                sb.append(' ').append(parameter.getBounds());
+            }
+            sb.append('\n');
+            for (VariableElement parameter : method.getParameters()) {
+                appendSignature(parameter, sb);
+            }
+        } else if (element instanceof VariableElement) {
+            sb.append(" = ").append(((VariableElement) element).getConstantValue());
+        }
+        sb.append('\n');
+        if (element.getKind() != ElementKind.PARAMETER) {
+            for (Element member : element.getEnclosedElements()) {
+                appendSignature(member, sb);
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the javac options, the checker and its options, and the stub
+     * files named by {@code -Astubs}.
+     */
+    private String configurationFingerprint() {
+        if (configurationFingerprint == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(checker.getClass().getName()).append('\n');
+            Options options = Options.instance(context());
+            for (String option : new TreeSet<>(options.keySet())) {
+                sb.append(option).append('=').append(options.get(option)).append('\n');
+            }
+            for (Map.Entry<String, String> option :
+                    new TreeMap<>(checker.getOptions()).entrySet()) {
+                sb.append(option).append('\n');
+            }
+            appendCodeSource(checker.getClass(), sb);
+            appendCodeSource(SourceChecker.class, sb);
+            String stubs = checker.getOption("stubs");
+            if (stubs != null) {
+                for (String stub : stubs.split(File.pathSeparator)) {
+                    appendFiles(new File(stub), sb);
+                }
+            }
+            configurationFingerprint = hash(sb.toString());
+        }
+        return configurationFingerprint;
+    }
+
+    /** Appends the jar file or directory that {@code cls} was loaded from to {@code sb}. */
+    private static void appendCodeSource(Class<?> cls, StringBuilder sb) {
+        CodeSource source = cls.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return;
+        }
+        try {
+            File file = new File(source.getLocation().toURI());
+            if (file.isDirectory()) {
+                sb.append(file).append(' ').append(lastModified(file)).append('\n');
+            } else {
+                sb.append(file)
+                        .append(' ')
+                        .append(file.length())
+                        .append(' ')
+                        .append(file.lastModified())
+                        .append('\n');
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            sb.append(source.getLocation()).append('\n');
+        }
+    }
+
+    /** Returns the latest modification time of {@code file} and the files below it. */
+    private static long lastModified(File file) {
+        long result = file.lastModified();
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                result = Math.max(result, lastModified(child));
+            }
+        }
+        return result;
+    }
+
+    /** Appends the names and contents of {@code file} and the files below it to {@code sb}. */
+    private static void appendFiles(File file, StringBuilder sb) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                appendFiles(child, sb);
+            }
+        } else {
+            sb.append(file).append(' ');
+            try {
+                byte[] contents = Files.readAllBytes(file.toPath());
+                sb.append(hash(new String(contents, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                // The checker reports stub files that cannot be read.
+                sb.append("unreadable");
+            }
+            sb.append('\n');
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Files
+    ///
+
+    /** Returns the file that holds the results of the top-level class {@code element}. */
+    private File fileOf(TypeElement element) {
+        return new File(directory, element.getQualifiedName() + ".txt");
+    }
+
+    /** Returns the lines of the stored results of {@code element}, or null if there are none. */
+    private /*@Nullable*/ List<String> read(TypeElement element) {
+        File file = fileOf(element);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code lines} as the results of {@code element}. Writes a temporary file and renames
+     * it, so that concurrent compilations never read a partially written file.
+     */
+    private void write(TypeElement element, List<String> lines) {
+        try {
+            Files.createDirectories(directory.toPath());
+            Path temporary = Files.createTempFile(directory.toPath(), "results", ".tmp");
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, fileOf(element).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            checker.message(
+                    Diagnostic.Kind.WARNING,
+                    "Could not store the results of checking %s in %s: %s",
+                    element,
+                    directory,
+                    e);
+        }
+    }
+
+    /** Escapes backslashes, tabs and line breaks in {@code s}. */
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\")
+                .replace("\t", "\\t")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+
+    /** Reverses {@link #escape}. */
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Returns the SHA-1 hash of {@code s}, as a hexadecimal string. */
+    private static String hash(String s) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("CheckResultStore: SHA-1 is not available", e);
+            return null; // dead code
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest(s.getBytes(StandardCharsets.UTF_8))) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** Returns the javac context of the compilation. */
+    private Context context() {
+        return ((JavacProcessingEnvironment) checker.getProcessingEnvironment()).getContext();
+    }
+
+    /** Returns the log of the compilation. */
+    private Log log() {
+        return Log.instance(context());
+    }
+}
@@ -16,6 +16,7 @@ import com.sun.source.util.Trees;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
@@ -194,6 +195,11 @@ import org.checkerframework.javacutil.TreeUtils;
     // suppress that warning.
     "showSuppressWarningKeys",
 
+    // Store the diagnostics of each class in the given directory, and reissue them
+    // instead of checking the class again if neither it nor its dependencies changed
+    // org.checkerframework.framework.source.CheckResultStore
+    "incrementalCache",
+
     ///
     /// Partially-annotated libraries
     ///
@@ -310,8 +316,22 @@ import org.checkerframework.javacutil.TreeUtils;
     // Set the cache size for caches in AnnotatedTypeFactory
     "atfCacheSize",
 
+    // Set the sizes of individual caches in AnnotatedTypeFactory, as a comma-separated
+    // list of name=size pairs; unlisted caches use atfCacheSize.
+    // org.checkerframework.framework.type.AnnotatedTypeFactory.getCacheSize(String)
+    "atfCacheSizes",
+
+    // Let caches in AnnotatedTypeFactory grow when they miss often and enough heap is free,
+    // optionally up to the given number of entries
+    // org.checkerframework.framework.type.AnnotatedTypeFactory.createCache(String)
+    "atfAdaptiveCache",
+
     // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    "atfDoNotCache",
+
+    // Set the maximum number of CFG nodes whose stores are cached after flow analysis
+    // org.checkerframework.dataflow.analysis.AnalysisResult.enableStoreCache
+    "flowStoreCacheSize"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements ErrorHandler, CFContext, OptionConfiguration {
@@ -424,6 +444,12 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     /** List of upstream checker names. Includes the current checker. */
     protected List<String> upstreamCheckerNames = null;
 
+    /**
+     * The results of checking each class in earlier compilations, if the {@code -AincrementalCache}
+     * option was given. Only set for the checker that calls all others.
+     */
+    private /*@Nullable*/ CheckResultStore checkResultStore = null;
+
     @Override
     public final synchronized void init(ProcessingEnvironment env) {
         super.init(env);
@@ -750,6 +776,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     }
 
     private void logCheckerError(CheckerError ce) {
+        markCheckResultsIncomplete();
         if (ce.getMessage() == null) {
             final String stackTrace = formatStackTrace(ce.getStackTrace());
             ErrorReporter.errorAbort(
@@ -809,6 +836,11 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         try {
             super.typeProcessingStart();
             initChecker();
+            String incrementalCache = getOption("incrementalCache");
+            // Whole-program inference needs to visit every class.
+            if (incrementalCache != null && !hasOption("infer")) {
+                checkResultStore = new CheckResultStore(this, new File(incrementalCache));
+            }
             if (this.messager == null) {
                 messager = processingEnv.getMessager();
                 messager.printMessage(
@@ -819,14 +851,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
                                 + "! Please ensure your checker is properly initialized.");
             }
             if (shouldAddShutdownHook()) {
-                Runtime.getRuntime()
-                        .addShutdownHook(
-                                new Thread() {
-                                    @Override
-                                    public void run() {
-                                        shutdownHook();
-                                    }
-                                });
+                addShutdownHook(this);
             }
         } catch (CheckerError ce) {
             logCheckerError(ce);
@@ -866,8 +891,49 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     }
 
     /**
-     * Method that gets called exactly once at shutdown time of the JVM. Checkers can override this
-     * method to customize the behavior.
+     * The checkers whose {@link #shutdownHook} has not been called yet. Guarded by the class
+     * object.
+     */
+    private static final List<SourceChecker> pendingShutdownHooks = new ArrayList<>();
+
+    /** Whether the JVM shutdown hook that calls {@link #runShutdownHooks} has been added. */
+    private static boolean jvmShutdownHookAdded = false;
+
+    /** Arranges for {@link #shutdownHook} of {@code checker} to be called. */
+    private static synchronized void addShutdownHook(SourceChecker checker) {
+        // A single hook for all checkers, so that a JVM that runs many compilations does not
+        // accumulate a hook and its checker per compilation.
+        if (!jvmShutdownHookAdded) {
+            Runtime.getRuntime()
+                    .addShutdownHook(
+                            new Thread() {
+                                @Override
+                                public void run() {
+                                    runShutdownHooks();
+                                }
+                            });
+            jvmShutdownHookAdded = true;
+        }
+        pendingShutdownHooks.add(checker);
+    }
+
+    /**
+     * Calls {@link #shutdownHook} of every checker whose hook has not been called yet, and releases
+     * these checkers. This is called at shutdown time of the JVM, and by a {@link
+     * org.checkerframework.framework.util.CheckerDaemon} after each compilation.
+     */
+    public static synchronized void runShutdownHooks() {
+        List<SourceChecker> checkers = new ArrayList<>(pendingShutdownHooks);
+        pendingShutdownHooks.clear();
+        for (SourceChecker checker : checkers) {
+            checker.shutdownHook();
+        }
+    }
+
+    /**
+     * Method that gets called exactly once, at shutdown time of the JVM or, in a {@link
+     * org.checkerframework.framework.util.CheckerDaemon}, after the compilation. Checkers can
+     * override this method to customize the behavior.
      */
     protected void shutdownHook() {
         if (hasOption("resourceStats")) {
@@ -929,43 +995,113 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
 
         Log log = Log.instance(context);
-        if (log.nerrors > this.errsOnLastExit) {
-            this.errsOnLastExit = log.nerrors;
-            previousErrorCompilationUnit = p.getCompilationUnit();
+        if (replayCheckResults(e, p)) {
             return;
         }
-        if (p.getCompilationUnit() == previousErrorCompilationUnit) {
-            // If the same compilation unit was seen with an error before,
-            // skip it. This is in particular necessary for Java errors, which
-            // show up once, but further calls to typeProcess will happen.
-            // See Issue 346.
-            return;
-        } else {
-            previousErrorCompilationUnit = null;
+        try {
+            if (log.nerrors > this.errsOnLastExit) {
+                this.errsOnLastExit = log.nerrors;
+                previousErrorCompilationUnit = p.getCompilationUnit();
+                markCheckResultsIncomplete();
+                return;
+            }
+            if (p.getCompilationUnit() == previousErrorCompilationUnit) {
+                // If the same compilation unit was seen with an error before,
+                // skip it. This is in particular necessary for Java errors, which
+                // show up once, but further calls to typeProcess will happen.
+                // See Issue 346.
+                markCheckResultsIncomplete();
+                return;
+            } else {
+                previousErrorCompilationUnit = null;
+            }
+            if (visitor == null) {
+                // typeProcessingStart invokes initChecker, which should
+                // have set the visitor. If the field is still null, an
+                // exception occured during initialization, which was already
+                // logged there. Don't also cause a NPE here.
+                markCheckResultsIncomplete();
+                return;
+            }
+            if (p.getCompilationUnit() != currentRoot) {
+                currentRoot = p.getCompilationUnit();
+                visitor.setRoot(currentRoot);
+            }
+
+            // Visit the attributed tree.
+            try {
+                visitor.visit(p);
+            } catch (CheckerError ce) {
+                logCheckerError(ce);
+            } catch (Throwable t) {
+                logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
+            } finally {
+                // Also add possibly deferred diagnostics, which will get published back in
+                // AbstractTypeProcessor.
+                this.errsOnLastExit = log.nerrors;
+            }
+        } finally {
+            storeCheckResults();
         }
-        if (visitor == null) {
-            // typeProcessingStart invokes initChecker, which should
-            // have set the visitor. If the field is still null, an
-            // exception occured during initialization, which was already
-            // logged there. Don't also cause a NPE here.
-            return;
+    }
+
+    /**
+     * If this is the checker that calls all others and the {@code -AincrementalCache} option was
+     * given, reissues the diagnostics of an earlier compilation for the top-level class {@code
+     * element} if neither the class nor anything it depends on changed since; see {@link
+     * CheckResultStore}. Otherwise starts recording the diagnostics of the class.
+     *
+     * <p>Implementations of {@link #typeProcess} that check the class themselves, instead of only
+     * calling {@code super.typeProcess}, call this method first, and call {@link
+     * #storeCheckResults()} after checking the class if this method returned false.
+     *
+     * @param element the top-level class to be checked
+     * @param path the path to the class
+     * @return true if the diagnostics of the class were reissued, and the class must not be checked
+     */
+    protected final boolean replayCheckResults(TypeElement element, TreePath path) {
+        if (parentChecker != null || checkResultStore == null) {
+            return false;
         }
-        if (p.getCompilationUnit() != currentRoot) {
-            currentRoot = p.getCompilationUnit();
-            visitor.setRoot(currentRoot);
+        Log log = Log.instance(((JavacProcessingEnvironment) processingEnv).getContext());
+        // With javac errors, the class is not checked; see typeProcess.
+        boolean mayReplay =
+                log.nerrors <= this.errsOnLastExit
+                        && path.getCompilationUnit() != previousErrorCompilationUnit;
+        if (checkResultStore.replay(element, path, mayReplay)) {
+            this.errsOnLastExit = log.nerrors;
+            return true;
         }
+        return false;
+    }
 
-        // Visit the attributed tree.
-        try {
-            visitor.visit(p);
-        } catch (CheckerError ce) {
-            logCheckerError(ce);
-        } catch (Throwable t) {
-            logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
-        } finally {
-            // Also add possibly deferred diagnostics, which will get published back in
-            // AbstractTypeProcessor.
-            this.errsOnLastExit = log.nerrors;
+    /**
+     * Stores the diagnostics recorded since the matching call of {@link #replayCheckResults}, if
+     * the class was checked completely.
+     */
+    protected final void storeCheckResults() {
+        if (parentChecker == null && checkResultStore != null) {
+            checkResultStore.finish();
+        }
+    }
+
+    /** Returns the store of check results of the checker that calls all others, or null. */
+    private /*@Nullable*/ CheckResultStore getCheckResultStore() {
+        SourceChecker checker = this;
+        while (checker.parentChecker != null) {
+            checker = checker.parentChecker;
+        }
+        return checker.checkResultStore;
+    }
+
+    /**
+     * Prevents the diagnostics of the class that is being checked from being stored, because the
+     * class was not checked completely.
+     */
+    protected final void markCheckResultsIncomplete() {
+        CheckResultStore store = getCheckResultStore();
+        if (store != null) {
+            store.markIncomplete();
         }
     }
 
@@ -1151,6 +1287,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
 
         if (source instanceof Element) {
+            CheckResultStore store = getCheckResultStore();
+            if (store != null) {
+                store.record(kind, messageText, source, currentRoot);
+            }
             messager.printMessage(kind, messageText, (Element) source);
         } else if (source instanceof Tree) {
             printMessage(kind, messageText, (Tree) source, currentRoot);
@@ -1166,6 +1306,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      */
     protected void printMessage(
             Diagnostic.Kind kind, String message, Tree source, CompilationUnitTree root) {
+        CheckResultStore store = getCheckResultStore();
+        if (store != null) {
+            store.record(kind, message, source, root);
+        }
         Trees.instance(processingEnv).printMessage(kind, message, source, root);
     }
 
@@ -1194,6 +1338,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     public void message(Diagnostic.Kind kind, String msg, Object... args) {
         String ftdmsg = String.format(msg, args);
         if (messager != null) {
+            CheckResultStore store = getCheckResultStore();
+            if (store != null) {
+                store.record(kind, ftdmsg, null, currentRoot);
+            }
             messager.printMessage(kind, ftdmsg);
         } else {
             System.err.println(kind + ": " + ftdmsg);
@@ -0,0 +1,163 @@
+package org.checkerframework.framework.stub;
+
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.stubparser.ast.IndexUnit;
+import org.checkerframework.stubparser.ast.body.BodyDeclaration;
+import org.checkerframework.stubparser.ast.body.TypeDeclaration;
+
+/**
+ * An in-memory cache of parsed stub files, shared by all type factories and all compilations in the
+ * same Java virtual machine. Nothing is written to disk, so the cache does not persist across javac
+ * invocations.
+ *
+ * <p>Every type factory reads {@code jdk.astub}, {@code flow.astub} and the other stub files of its
+ * checker, and the checkers of a compound or aggregate checker read the same files. The syntactic
+ * parse of a stub file does not depend on the checker or the classpath, so within one virtual
+ * machine it is done once per distinct file contents: once per javac run, or once for all
+ * compilations of a {@link org.checkerframework.framework.util.CheckerDaemon}. Resolving the names
+ * in a parsed stub file and applying its annotations is still done by each {@link StubParser},
+ * which never modifies the parsed stub file.
+ *
+ * <p>Entries are keyed by a hash of the contents of the stub file, so an edited stub file is parsed
+ * again. They are held by soft references, so the cache never causes the virtual machine to run out
+ * of memory.
+ *
+ * <p>Parsed stub files are not stored on disk: reading a parsed stub file back with Java
+ * serialization takes longer than parsing it again.
+ *
+ * <p>Within one compilation, the checkers of an aggregate or compound checker also share the
+ * elements that the members of each type declaration in a parsed stub file resolve to; see {@link
+ * #getResolvedMembers(ProcessingEnvironment)}.
+ */
+public class StubCache {
+
+    /** Maps the hash of the contents of a stub file to the parsed stub file. */
+    private static final Map<String, SoftReference<IndexUnit>> cache = new HashMap<>();
+
+    /** The number of stub files that were found in the cache. */
+    private static int hits = 0;
+
+    /** The number of stub files that were parsed and added to the cache. */
+    private static int misses = 0;
+
+    /** The key of the members resolved in a compilation, in the compilation's javac context. */
+    private static final Context.Key<Map<TypeDeclaration, Map<Element, BodyDeclaration>>>
+            resolvedMembersKey = new Context.Key<>();
+
+    /** Do not instantiate. */
+    private StubCache() {
+        throw new AssertionError("Class StubCache cannot be instantiated.");
+    }
+
+    /**
+     * Returns the parsed stub file {@code filename}, read from the cache if a stub file with the
+     * same contents was parsed before and parsed from {@code inputStream} otherwise.
+     *
+     * @param filename the name of the stub file, used in messages
+     * @param inputStream the contents of the stub file; this method closes it
+     * @param env the processing environment, used for options and messages
+     * @return the parsed stub file
+     */
+    public static IndexUnit parse(
+            String filename, InputStream inputStream, ProcessingEnvironment env) {
+        byte[] contents;
+        try {
+            contents = readFully(inputStream);
+        } catch (IOException e) {
+            ErrorReporter.errorAbort("StubCache: could not read stub file " + filename, e);
+            return null; // dead code
+        }
+        String key = hash(contents);
+
+        synchronized (cache) {
+            SoftReference<IndexUnit> ref = cache.get(key);
+            IndexUnit index = ref == null ? null : ref.get();
+            if (index != null) {
+                hits++;
+                return index;
+            }
+            misses++;
+        }
+
+        IndexUnit index =
+                StubParser.parseStubUnit(filename, new ByteArrayInputStream(contents), env);
+        synchronized (cache) {
+            cache.put(key, new SoftReference<>(index));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the map from each type declaration in a parsed stub file to the elements that its
+     * members resolve to in the compilation of {@code env}. The map is shared by all stub parsers
+     * of the compilation, and is freed with the compilation. Clients must synchronize on it.
+     *
+     * @param env the processing environment of the compilation
+     * @return the resolved members of type declarations in parsed stub files
+     */
+    static Map<TypeDeclaration, Map<Element, BodyDeclaration>> getResolvedMembers(
+            ProcessingEnvironment env) {
+        Context context = ((JavacProcessingEnvironment) env).getContext();
+        synchronized (context) {
+            Map<TypeDeclaration, Map<Element, BodyDeclaration>> resolved =
+                    context.get(resolvedMembersKey);
+            if (resolved == null) {
+                resolved = new IdentityHashMap<>();
+                context.put(resolvedMembersKey, resolved);
+            }
+            return resolved;
+        }
+    }
+
+    /** @return a one-line summary of the hits and misses of the cache */
+    public static String getStatistics() {
+        synchronized (cache) {
+            return "stubCache: size " + cache.size() + ", hits " + hits + ", misses " + misses;
+        }
+    }
+
+    /** Returns a hash of {@code contents}, as a hexadecimal string. */
+    private static String hash(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("StubCache: SHA-1 is not available", e);
+            return null; // dead code
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest(contents)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** Reads all of {@code in} and closes it. */
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -4,8 +4,11 @@ package org.checkerframework.framework.stub;
 import org.checkerframework.checker.nullness.qual.*;
 */
 
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -120,6 +123,24 @@ public class StubParser {
     /** Annotation to added to every method and constructor in the stub file. */
     private final AnnotationMirror fromStubFile;
 
+    /**
+     * The key of the warnings that the stub parsers of a compilation issued, in the compilation's
+     * javac context.
+     */
+    private static final Context.Key<Set<String>> warningsKey = new Context.Key<>();
+
+    /**
+     * The key of the nested classes that the stub parsers of a compilation warned about, in the
+     * compilation's javac context.
+     */
+    private static final Context.Key<Set<String>> nestedClassWarningsKey = new Context.Key<>();
+
+    /** The warnings issued by the stub parsers of the compilation, which are not issued again. */
+    private final Set<String> warnings;
+
+    /** The nested classes that the stub parsers of the compilation warned about. */
+    private final Set<String> nestedClassWarnings;
+
     /**
      * List of AnnotatedTypeMirrors for class or method type parameters that are in scope of the
      * elements currently parsed.
@@ -137,6 +158,21 @@ public class StubParser {
             InputStream inputStream,
             AnnotatedTypeFactory factory,
             ProcessingEnvironment env) {
+        this(filename, StubCache.parse(filename, inputStream, env), factory, env);
+    }
+
+    /**
+     * @param filename name of stub file
+     * @param index the parsed stub file, which is shared with other stub parsers and must not be
+     *     modified
+     * @param factory AnnotatedtypeFactory to use
+     * @param env ProcessingEnviroment to use
+     */
+    private StubParser(
+            String filename,
+            IndexUnit index,
+            AnnotatedTypeFactory factory,
+            ProcessingEnvironment env) {
         this.filename = filename;
         this.atypeFactory = factory;
         this.processingEnv = env;
@@ -148,19 +184,9 @@ public class StubParser {
         this.warnIfNotFound = options.containsKey("stubWarnIfNotFound");
         this.warnIfStubOverwritesBytecode = options.containsKey("stubWarnIfOverwritesBytecode");
         this.debugStubParser = options.containsKey("stubDebug");
-
-        if (debugStubParser) {
-            stubDebug(String.format("parsing stub file %s%n", filename));
-        }
-        IndexUnit parsedindex;
-        try {
-            parsedindex = JavaParser.parse(inputStream);
-        } catch (Exception e) {
-            ErrorReporter.errorAbort(
-                    "StubParser: exception from JavaParser.parse for file " + filename, e);
-            parsedindex = null; // dead code, but needed for def. assignment checks
-        }
-        this.index = parsedindex;
+        this.index = index;
+        this.warnings = getCompilationSet(env, warningsKey);
+        this.nestedClassWarnings = getCompilationSet(env, nestedClassWarningsKey);
 
         // getSupportedAnnotations also sets imports. This should be refactored to be nicer.
         supportedAnnotations = getSupportedAnnotations();
@@ -176,6 +202,27 @@ public class StubParser {
         this.fromStubFile = AnnotationUtils.fromClass(elements, FromStubFile.class);
     }
 
+    /**
+     * Parses the stub file {@code filename} from {@code inputStream}, without resolving any of its
+     * names.
+     */
+    static IndexUnit parseStubUnit(
+            String filename, InputStream inputStream, ProcessingEnvironment env) {
+        String message = String.format("parsing stub file %s%n", filename);
+        if (env.getOptions().containsKey("stubDebug")
+                && getCompilationSet(env, warningsKey).add(message)) {
+            env.getMessager()
+                    .printMessage(javax.tools.Diagnostic.Kind.NOTE, "StubParser: " + message);
+        }
+        try {
+            return JavaParser.parse(inputStream);
+        } catch (Exception e) {
+            ErrorReporter.errorAbort(
+                    "StubParser: exception from JavaParser.parse for file " + filename, e);
+            return null; // dead code
+        }
+    }
+
     /** All annotations defined in the package. Keys are simple names. */
     private Map<String, AnnotationMirror> annosInPackage(PackageElement packageElement) {
         return createImportedAnnotationsMap(
@@ -882,10 +929,31 @@ public class StubParser {
         }
     }
 
-    private static final Set<String> nestedClassWarnings = new HashSet<String>();
-
+    /**
+     * Returns the elements that the members of {@code typeDecl} resolve to. The result only depends
+     * on the compilation, not on the type factory, so it is shared with other stub parsers through
+     * {@link StubCache#getResolvedMembers(ProcessingEnvironment)} and must not be modified.
+     */
     private Map<Element, BodyDeclaration> getMembers(
             TypeElement typeElt, TypeDeclaration typeDecl) {
+        Map<TypeDeclaration, Map<Element, BodyDeclaration>> resolved =
+                StubCache.getResolvedMembers(processingEnv);
+        synchronized (resolved) {
+            Map<Element, BodyDeclaration> members = resolved.get(typeDecl);
+            if (members != null) {
+                return members;
+            }
+        }
+        Map<Element, BodyDeclaration> members =
+                Collections.unmodifiableMap(resolveMembers(typeElt, typeDecl));
+        synchronized (resolved) {
+            resolved.put(typeDecl, members);
+        }
+        return members;
+    }
+
+    private Map<Element, BodyDeclaration> resolveMembers(
+            TypeElement typeElt, TypeDeclaration typeDecl) {
         assert (typeElt.getSimpleName().contentEquals(typeDecl.getName())
                         || typeDecl.getName().endsWith("$" + typeElt.getSimpleName().toString()))
                 : String.format("%s  %s", typeElt.getSimpleName(), typeDecl.getName());
@@ -1117,7 +1185,24 @@ public class StubParser {
         }
     }
 
-    private static Set<String> warnings = new HashSet<String>();
+    /**
+     * Returns the set stored under {@code key} in the javac context of the compilation of {@code
+     * env}, creating it if necessary. The set is shared by all stub parsers of the compilation and
+     * freed with it, so that a process that runs several compilations, such as a {@link
+     * org.checkerframework.framework.util.CheckerDaemon}, issues the warnings of each compilation.
+     */
+    private static Set<String> getCompilationSet(
+            ProcessingEnvironment env, Context.Key<Set<String>> key) {
+        Context context = ((JavacProcessingEnvironment) env).getContext();
+        synchronized (context) {
+            Set<String> set = context.get(key);
+            if (set == null) {
+                set = new HashSet<>();
+                context.put(key, set);
+            }
+            return set;
+        }
+    }
 
     /**
      * Issues the given warning about missing elements, only if it has not been previously issued.
@@ -31,6 +31,9 @@ import org.junit.runners.model.TestClass;
  * method must return either a {@code List<File>} where each element of the list is a Java file to
  * test against OR a {@code String []} where each String in the array is a directory in the tests
  * directory.
+ *
+ * <p>If the system property {@link TestUtilities#TESTS_SHARD} is set, only the directories of the
+ * selected shard are tested, so that several Java virtual machines can run the tests in parallel.
  */
 public class PerDirectorySuite extends Suite {
 
@@ -53,7 +56,11 @@ public class PerDirectorySuite extends Suite {
         final List<List<File>> parametersList = getParametersList(testClass);
 
         for (List<File> parameters : parametersList) {
-            runners.add(new PerParameterSetTestRunner(javaTestClass, parameters));
+            String testName =
+                    javaTestClass.getName() + " " + parameters.get(0).getParentFile().getPath();
+            if (TestUtilities.isInSelectedShard(testName)) {
+                runners.add(new PerParameterSetTestRunner(javaTestClass, parameters));
+            }
         }
     }
 
@@ -7,6 +7,8 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -17,9 +19,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
+import javax.annotation.processing.Processor;
 import javax.tools.Diagnostic;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 import org.checkerframework.framework.util.PluginUtil;
 import org.junit.Assert;
@@ -414,12 +418,70 @@ public class TestUtilities {
 
     public static void ensureDirectoryExists(File path) {
         if (!path.exists()) {
-            if (!path.mkdirs()) {
+            // Another test process may create the directory concurrently.
+            if (!path.mkdirs() && !path.isDirectory()) {
                 throw new RuntimeException("Could not make directory: " + path.getAbsolutePath());
             }
         }
     }
 
+    /**
+     * Returns the javac options that compile against the classpath of the running tests, write
+     * class files to {@code outputDir}, and omit the text of checker messages, followed by {@code
+     * options}.
+     */
+    public static List<String> getCompilerOptions(File outputDir, String... options) {
+        ensureDirectoryExists(outputDir);
+        List<String> result = new ArrayList<>();
+        result.add("-classpath");
+        result.add(System.getProperty("java.class.path"));
+        result.add("-d");
+        result.add(outputDir.getPath());
+        result.add("-Anomsgtext");
+        result.addAll(Arrays.asList(options));
+        return result;
+    }
+
+    /**
+     * Compiles {@code sources} with {@code options} in a new file manager, as a fresh javac run
+     * does, and returns the messages that javac printed. Unlike {@link TypecheckExecutor}, this
+     * method can run processor instances, and it does not share a file manager between
+     * compilations.
+     *
+     * @param sources the source files to compile
+     * @param options the javac options, such as those returned by {@link #getCompilerOptions}
+     * @param processors the annotation processors to run, or null to run those named by the
+     *     {@code -processor} option
+     * @return the messages that javac printed
+     */
+    public static String compile(
+            Iterable<File> sources,
+            List<String> options,
+            Iterable<? extends Processor> processors) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StringWriter output = new StringWriter();
+        try (StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(null, null, null)) {
+            PrintWriter writer = new PrintWriter(output);
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(
+                            writer,
+                            fileManager,
+                            null,
+                            options,
+                            null,
+                            fileManager.getJavaFileObjectsFromFiles(sources));
+            if (processors != null) {
+                task.setProcessors(processors);
+            }
+            task.call();
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close file manager", e);
+        }
+        return output.toString();
+    }
+
     public static boolean testBooleanProperty(String propName) {
         return testBooleanProperty(propName, false);
     }
@@ -432,4 +494,46 @@ public class TestUtilities {
         String emitDebug = System.getProperty("emit.test.debug");
         return emitDebug != null && emitDebug.equalsIgnoreCase("true");
     }
+
+    /**
+     * The system property that selects the tests run by this Java virtual machine, in the form
+     * "k/n": the tests of {@link PerDirectorySuite} and {@link PerFileSuite} are split into n
+     * shards, and only shard k (counting from 0) is run. Running each shard in its own virtual
+     * machine runs the tests in parallel; the shards are disjoint and always the same, so every
+     * test is run exactly once and compares its diagnostics as if the tests were run sequentially.
+     */
+    public static final String TESTS_SHARD = "tests.shard";
+
+    /**
+     * Returns true if the test named {@code testName} belongs to the shard selected by the {@link
+     * #TESTS_SHARD} property, or if that property is not set.
+     *
+     * @param testName a name that identifies the test across runs, such as the name of the test
+     *     class followed by the test directory
+     */
+    public static boolean isInSelectedShard(String testName) {
+        String shard = System.getProperty(TESTS_SHARD);
+        if (shard == null || shard.isEmpty()) {
+            return true;
+        }
+        String[] parts = shard.split("/");
+        int index;
+        int count;
+        try {
+            index = Integer.parseInt(parts[0].trim());
+            count = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : -1;
+        } catch (NumberFormatException e) {
+            count = -1;
+            index = -1;
+        }
+        if (count <= 0 || index < 0 || index >= count) {
+            throw new RuntimeException(
+                    "Property "
+                            + TESTS_SHARD
+                            + " must have the form k/n with 0 <= k < n: "
+                            + shard);
+        }
+        // String.hashCode is specified, so a test is in the same shard in every run.
+        return Math.floorMod(testName.hashCode(), count) == index;
+    }
 }
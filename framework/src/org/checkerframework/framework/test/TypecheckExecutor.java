@@ -1,6 +1,7 @@
 package org.checkerframework.framework.test;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,10 +13,26 @@ import javax.tools.ToolProvider;
 import org.checkerframework.framework.test.diagnostics.JavaDiagnosticReader;
 import org.checkerframework.framework.test.diagnostics.TestDiagnostic;
 import org.checkerframework.framework.util.PluginUtil;
+import org.checkerframework.javacutil.Pair;
 
 /** Used by the Checker Framework test suite to run the framework and generate a test result. */
 public class TypecheckExecutor {
 
+    /** The compiler that runs all tests. */
+    private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * The file manager of the last test run by the current thread, together with the options of
+     * that test that the file manager handles.
+     *
+     * <p>Reusing a file manager saves reading the classpath, and in particular the annotated JDK,
+     * for every test. A compilation sets the file manager options that it is passed, but does not
+     * reset the others, so a file manager is only reused by a test with the same file manager
+     * options. javac is not thread-safe, so every thread has its own file manager.
+     */
+    private static final ThreadLocal<Pair<List<String>, StandardJavaFileManager>> fileManagers =
+            new ThreadLocal<>();
+
     public TypecheckExecutor() {}
 
     /** Runs a typechecking test using the given configuration and returns the test result */
@@ -34,12 +51,6 @@ public class TypecheckExecutor {
         final StringWriter javacOutput = new StringWriter();
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
 
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
-        Iterable<? extends JavaFileObject> javaFiles =
-                fileManager.getJavaFileObjects(
-                        configuration.getTestSourceFiles().toArray(new File[] {}));
-
         // Even though the method compiler.getTask takes a list of processors, it fails if processors are passed this way
         // with the message:
         // error: Class names, 'org.checkerframework.checker.interning.InterningChecker', are only accepted if
@@ -60,6 +71,11 @@ public class TypecheckExecutor {
         nonJvmOptions.add("100000");
         options.addAll(nonJvmOptions);
 
+        StandardJavaFileManager fileManager = getFileManager(options);
+        Iterable<? extends JavaFileObject> javaFiles =
+                fileManager.getJavaFileObjects(
+                        configuration.getTestSourceFiles().toArray(new File[] {}));
+
         if (configuration.shouldEmitDebugInfo()) {
             System.out.println("Running test using the following invocation:");
             System.out.println(
@@ -93,6 +109,39 @@ public class TypecheckExecutor {
                 diagnostics.getDiagnostics());
     }
 
+    /**
+     * Returns a file manager for a compilation with the given options, reusing the file manager of
+     * the previous test of this thread if it was run with the same file manager options.
+     */
+    private static StandardJavaFileManager getFileManager(List<String> options) {
+        Pair<List<String>, StandardJavaFileManager> previous = fileManagers.get();
+        StandardJavaFileManager fileManager =
+                previous != null
+                        ? previous.second
+                        : compiler.getStandardFileManager(null, null, null);
+
+        List<String> fileManagerOptions = new ArrayList<>();
+        for (int i = 0; i < options.size(); i++) {
+            int arguments = fileManager.isSupportedOption(options.get(i));
+            if (arguments >= 0) {
+                fileManagerOptions.addAll(
+                        options.subList(i, Math.min(i + arguments + 1, options.size())));
+                i += arguments;
+            }
+        }
+
+        if (previous != null && !previous.first.equals(fileManagerOptions)) {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not close file manager", e);
+            }
+            fileManager = compiler.getStandardFileManager(null, null, null);
+        }
+        fileManagers.set(Pair.of(fileManagerOptions, fileManager));
+        return fileManager;
+    }
+
     /**
      * Reads the expected diagnostics for the given configuration and creates a TypecheckResult
      * which contains all of the missing and expected diagnostics
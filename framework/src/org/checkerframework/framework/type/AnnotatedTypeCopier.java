@@ -406,7 +406,7 @@ public class AnnotatedTypeCopier
     protected void maybeCopyPrimaryAnnotations(
             final AnnotatedTypeMirror source, final AnnotatedTypeMirror dest) {
         if (copyAnnotations) {
-            dest.addAnnotations(source.getAnnotationsField());
+            dest.shareAnnotations(source);
         }
     }
 }
@@ -109,10 +109,10 @@ import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInfe
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
-import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -283,29 +283,59 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * Should results be cached? This means that ATM.deepCopy() will be called. ATM.deepCopy() used
      * to (and perhaps still does) side effect the ATM being copied. So setting this to false is not
      * equivalent to setting shouldReadCache to false.
+     *
+     * <p>A copy of a cached type shares the annotation sets of the cached type until either one
+     * modifies its primary annotations; see {@link
+     * AnnotatedTypeMirror#shareAnnotations(AnnotatedTypeMirror)}.
      */
     public boolean shouldCache;
 
     /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
     private static final int DEFAULT_CACHE_SIZE = 300;
 
+    /**
+     * Factor by which a cache may grow beyond its initial size if the atfAdaptiveCache option is
+     * given without a limit.
+     */
+    private static final int DEFAULT_ADAPTIVE_CACHE_GROWTH = 64;
+
     /** Mapping from a Tree to its annotated type; implicits have been applied. */
-    private final Map<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
+    private final LRUCache<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
 
     /**
      * Mapping from a Tree to its annotated type; before implicits are applied, just what the
      * programmer wrote.
      */
-    protected final Map<Tree, AnnotatedTypeMirror> fromTreeCache;
+    protected final LRUCache<Tree, AnnotatedTypeMirror> fromTreeCache;
 
     /**
      * Mapping from an Element to its annotated type; before implicits are applied, just what the
      * programmer wrote.
      */
-    private final Map<Element, AnnotatedTypeMirror> elementCache;
+    private final LRUCache<Element, AnnotatedTypeMirror> elementCache;
 
     /** Mapping from an Element to the source Tree of the declaration. */
-    private final Map<Element, Tree> elementToTreeCache;
+    private final LRUCache<Element, Tree> elementToTreeCache;
+
+    /**
+     * Mapping from a declared type to its direct supertypes, for types that have a {@link
+     * TypeCacheKey}. The lists and their types must not be modified; readers copy them.
+     *
+     * @see SupertypeFinder#directSuperTypes(AnnotatedDeclaredType)
+     */
+    /*package-private*/ final LRUCache<List<Object>, List<AnnotatedDeclaredType>>
+            directSuperTypesCache;
+
+    /**
+     * Mapping from a declared type and the element of a supertype to the result of asSuper, for
+     * types that have a {@link TypeCacheKey}. The types must not be modified; readers copy them.
+     *
+     * @see AsSuperVisitor#asSuper(AnnotatedTypeMirror, AnnotatedTypeMirror)
+     */
+    /*package-private*/ final LRUCache<List<Object>, AnnotatedDeclaredType> asSuperCache;
+
+    /** All caches created by {@link #createCache(String)}, for reporting statistics. */
+    private final List<LRUCache<?, ?>> caches = new ArrayList<>();
 
     /**
      * Constructs a factory from the given {@link ProcessingEnvironment} instance and syntax tree
@@ -340,16 +370,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         this.shouldCache = !checker.hasOption("atfDoNotCache");
         if (shouldCache) {
-            int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            this.classAndMethodTreeCache = createCache("classAndMethodTree");
+            this.fromTreeCache = createCache("fromTree");
+            this.elementCache = createCache("element");
+            this.elementToTreeCache = createCache("elementToTree");
+            this.directSuperTypesCache = createCache("directSuperTypes");
+            this.asSuperCache = createCache("asSuper");
         } else {
             this.classAndMethodTreeCache = null;
             this.fromTreeCache = null;
             this.elementCache = null;
             this.elementToTreeCache = null;
+            this.directSuperTypesCache = null;
+            this.asSuperCache = null;
         }
 
         this.typeFormatter = createAnnotatedTypeFormatter();
@@ -449,6 +482,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                     "AnnotatedTypeFactory with null qualifier hierarchy not supported.");
         }
         this.typeHierarchy = createTypeHierarchy();
+        if (shouldCache && typeHierarchy instanceof DefaultTypeHierarchy) {
+            ((DefaultTypeHierarchy) typeHierarchy).setSubtypeCache(createCache("isSubtype"));
+        }
         this.typeVarSubstitutor = createTypeVariableSubstitutor();
         this.typeArgumentInference = createTypeArgumentInference();
 
@@ -510,6 +546,13 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             elementToTreeCache.clear();
             fromTreeCache.clear();
             classAndMethodTreeCache.clear();
+            // The annotations of supertypes can depend on the trees of the compilation unit,
+            // and so can the results of subtype checks, which use asSuper.
+            directSuperTypesCache.clear();
+            asSuperCache.clear();
+            if (typeHierarchy instanceof DefaultTypeHierarchy) {
+                ((DefaultTypeHierarchy) typeHierarchy).clearSubtypeCache();
+            }
 
             // There is no need to clear the following cache, it is limited by cache size and it
             // contents won't change between compilation units.
@@ -900,14 +943,87 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (option == null) {
             return DEFAULT_CACHE_SIZE;
         }
+        return parseCacheSize("atfCacheSize", option);
+    }
+
+    /**
+     * Returns the size of the cache named {@code name}: the value given for {@code name} in the
+     * atfCacheSizes option, which is a comma-separated list of {@code name=size} pairs, or the
+     * value of {@link #getCacheSize()} if the option does not mention the cache.
+     *
+     * @param name the name of a cache, such as "fromTree"
+     * @return the size of the cache
+     */
+    protected int getCacheSize(String name) {
+        String option = checker.getOption("atfCacheSizes");
+        if (option != null) {
+            for (String entry : option.split(",")) {
+                String[] keyValue = entry.split("=", 2);
+                if (keyValue.length != 2) {
+                    ErrorReporter.errorAbort("atfCacheSizes entry was not name=size: " + entry);
+                }
+                if (keyValue[0].trim().equals(name)) {
+                    return parseCacheSize("atfCacheSizes", keyValue[1].trim());
+                }
+            }
+        }
+        return getCacheSize();
+    }
+
+    /**
+     * Creates a cache named {@code name} whose size is given by {@link #getCacheSize(String)}. If
+     * the atfAdaptiveCache option is given, the cache can grow up to the option's value, or to
+     * {@link #DEFAULT_ADAPTIVE_CACHE_GROWTH} times its initial size if the option has no value.
+     *
+     * @param name the name of the cache, used in options and statistics
+     * @return a new, empty cache
+     */
+    protected <K, V> LRUCache<K, V> createCache(String name) {
+        int size = getCacheSize(name);
+        int adaptiveLimit = 0;
+        if (checker.hasOption("atfAdaptiveCache")) {
+            String option = checker.getOption("atfAdaptiveCache");
+            if (option == null) {
+                adaptiveLimit = size * DEFAULT_ADAPTIVE_CACHE_GROWTH;
+            } else {
+                adaptiveLimit = parseCacheSize("atfAdaptiveCache", option);
+            }
+        }
+        LRUCache<K, V> cache = new LRUCache<>(name, size, adaptiveLimit);
+        caches.add(cache);
+        return cache;
+    }
+
+    private static int parseCacheSize(String optionName, String value) {
         try {
-            return Integer.valueOf(option);
+            return Integer.valueOf(value);
         } catch (NumberFormatException ex) {
-            ErrorReporter.errorAbort("atfCacheSize was not an integer: " + option);
+            ErrorReporter.errorAbort(optionName + " was not an integer: " + value);
             return 0; // dead code
         }
     }
 
+    /**
+     * Prints the size, hit rate and number of evictions of every cache of this factory, and the
+     * statistics of its type argument inference, to standard output. Called when the resourceStats
+     * option is given.
+     */
+    public void printCacheStatistics() {
+        boolean inferenceStatistics =
+                typeArgumentInference instanceof DefaultTypeArgumentInference;
+        if (caches.isEmpty() && !inferenceStatistics) {
+            return;
+        }
+        System.out.println(getClass().getSimpleName() + " cache statistics");
+        for (LRUCache<?, ?> cache : caches) {
+            System.out.println("  " + cache.getStatistics());
+        }
+        if (inferenceStatistics) {
+            System.out.println(
+                    "  " + ((DefaultTypeArgumentInference) typeArgumentInference).getStatistics());
+        }
+    }
+
     /**
      * Returns an AnnotatedTypeMirror representing the annotated type of {@code elt}.
      *
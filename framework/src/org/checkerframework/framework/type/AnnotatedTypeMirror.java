@@ -139,7 +139,15 @@ public abstract class AnnotatedTypeMirror {
     // the class name of Annotation instead.
     // Caution: Assumes that a type can have at most one AnnotationMirror for
     // any Annotation type. JSR308 is pushing to have this change.
-    private final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+    private Set<AnnotationMirror> annotations = new CompactAnnotationSet();
+
+    /**
+     * Whether {@link #annotations} may also be referenced by another type, in which case it is
+     * copied before it is modified.
+     *
+     * @see #shareAnnotations(AnnotatedTypeMirror)
+     */
+    private boolean annotationsShared = false;
 
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
@@ -244,6 +252,9 @@ public abstract class AnnotatedTypeMirror {
      * @return an annotation from the same hierarchy as p if present
      */
     public AnnotationMirror getAnnotationInHierarchy(AnnotationMirror p) {
+        if (annotations.isEmpty()) {
+            return null;
+        }
         AnnotationMirror aliased = p;
         if (!atypeFactory.isSupportedQualifier(aliased)) {
             aliased = atypeFactory.aliasedAnnotation(p);
@@ -300,7 +311,8 @@ public abstract class AnnotatedTypeMirror {
      * <p>It does not include annotations in deep types (type arguments, array components, etc).
      *
      * <p>The returned set should not be modified, but for efficiency reasons modification is not
-     * prevented. Modifications might break invariants.
+     * prevented. Modifications might break invariants, and might affect copies of this type that
+     * share the set.
      *
      * @return the set of the annotations on this, directly
      */
@@ -308,6 +320,39 @@ public abstract class AnnotatedTypeMirror {
         return annotations;
     }
 
+    /**
+     * Gives this type the same primary annotations as {@code source}, without copying them: both
+     * types refer to the same annotation set until one of them modifies its annotations, at which
+     * point that type makes its own copy of the set. Copies of cached types therefore only allocate
+     * annotation sets for the types whose annotations are actually changed.
+     *
+     * <p>If this type already has annotations, or belongs to a different type factory, this method
+     * behaves like {@code addAnnotations(source.getAnnotationsField())}.
+     *
+     * @param source the type whose primary annotations are copied to this type
+     */
+    /*package-private*/ void shareAnnotations(AnnotatedTypeMirror source) {
+        if (!annotations.isEmpty() || atypeFactory != source.atypeFactory) {
+            addAnnotations(source.annotations);
+        } else if (!source.annotations.isEmpty()) {
+            annotations = source.annotations;
+            annotationsShared = true;
+            source.annotationsShared = true;
+        }
+    }
+
+    /**
+     * Ensures that {@link #annotations} is not referenced by any other type. Must be called before
+     * each modification of {@link #annotations}.
+     */
+    private void unshareAnnotations() {
+        if (annotationsShared) {
+            // Copying a CompactAnnotationSet only copies a reference to its array.
+            annotations = new CompactAnnotationSet(annotations);
+            annotationsShared = false;
+        }
+    }
+
     /**
      * Returns the "effective" annotations on this type, i.e. the annotations on the type itself, or
      * on the upper/extends bound of a type variable/wildcard (recursively, until a class type is
@@ -567,7 +612,10 @@ public abstract class AnnotatedTypeMirror {
                     "AnnotatedTypeMirror.addAnnotation: null is not a valid annotation.");
         }
         if (atypeFactory.isSupportedQualifier(a)) {
-            this.annotations.add(a);
+            if (!annotations.contains(a)) {
+                unshareAnnotations();
+                this.annotations.add(a);
+            }
         } else {
             AnnotationMirror aliased = atypeFactory.aliasedAnnotation(a);
             if (atypeFactory.isSupportedQualifier(aliased)) {
@@ -651,6 +699,7 @@ public abstract class AnnotatedTypeMirror {
         // It's currently necessary for the Lock Checker.
         AnnotationMirror anno = getAnnotation(AnnotationUtils.annotationName(a));
         if (anno != null) {
+            unshareAnnotations();
             return annotations.remove(anno);
         } else {
             return false;
@@ -720,7 +769,12 @@ public abstract class AnnotatedTypeMirror {
      * methods.
      */
     public void clearAnnotations() {
-        annotations.clear();
+        if (annotationsShared) {
+            annotations = new CompactAnnotationSet();
+            annotationsShared = false;
+        } else {
+            annotations.clear();
+        }
     }
 
     @SideEffectFree
@@ -1002,7 +1056,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedDeclaredType type =
                     new AnnotatedDeclaredType(getUnderlyingType(), atypeFactory, declaration);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             type.setEnclosingType(getEnclosingType());
             type.setTypeArguments(getTypeArguments());
@@ -1418,7 +1472,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedArrayType shallowCopy(boolean copyAnnotations) {
             AnnotatedArrayType type = new AnnotatedArrayType((ArrayType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             type.setComponentType(getComponentType());
             return type;
@@ -1475,6 +1529,12 @@ public abstract class AnnotatedTypeMirror {
             fixupBoundAnnotations();
         }
 
+        @Override
+        /*package-private*/ void shareAnnotations(AnnotatedTypeMirror source) {
+            super.shareAnnotations(source);
+            fixupBoundAnnotations();
+        }
+
         /**
          * Change whether this {@code AnnotatedTypeVariable} is considered a use or a declaration
          * (use this method with caution).
@@ -1677,7 +1737,7 @@ public abstract class AnnotatedTypeMirror {
                             ((TypeVariable) actualType), atypeFactory, declaration);
 
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
 
             if (!inUpperBounds) {
@@ -1763,7 +1823,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedNoType shallowCopy(boolean copyAnnotations) {
             AnnotatedNoType type = new AnnotatedNoType((NoType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             return type;
         }
@@ -1805,7 +1865,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedNullType shallowCopy(boolean copyAnnotations) {
             AnnotatedNullType type = new AnnotatedNullType((NullType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             return type;
         }
@@ -1851,7 +1911,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedPrimitiveType type =
                     new AnnotatedPrimitiveType((PrimitiveType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             return type;
         }
@@ -1887,6 +1947,12 @@ public abstract class AnnotatedTypeMirror {
             fixupBoundAnnotations();
         }
 
+        @Override
+        /*package-private*/ void shareAnnotations(AnnotatedTypeMirror source) {
+            super.shareAnnotations(source);
+            fixupBoundAnnotations();
+        }
+
         /**
          * Sets the super bound of this wild card
          *
@@ -1993,7 +2059,7 @@ public abstract class AnnotatedTypeMirror {
             type.setExtendsBound(getExtendsBound().shallowCopy());
             type.setSuperBound(getSuperBound().shallowCopy());
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
 
             type.uninferredTypeArgument = uninferredTypeArgument;
@@ -2078,7 +2144,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedIntersectionType type =
                     new AnnotatedIntersectionType((IntersectionType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             type.supertypes = this.supertypes;
             return type;
@@ -2147,7 +2213,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedUnionType shallowCopy(boolean copyAnnotations) {
             AnnotatedUnionType type = new AnnotatedUnionType((UnionType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.shareAnnotations(this);
             }
             type.alternatives = this.alternatives;
             return type;
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Types;
@@ -20,6 +21,7 @@ import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.TypesUtils;
 
 /**
@@ -60,6 +62,23 @@ public class AsSuperVisitor extends AbstractAtmComboVisitor<AnnotatedTypeMirror,
             return (T) type.deepCopy();
         }
 
+        // For two declared types, the result only depends on type and on the erasure of
+        // superType; see visitDeclared_Declared.
+        LRUCache<List<Object>, AnnotatedDeclaredType> cache = annotatedTypeFactory.asSuperCache;
+        List<Object> key = null;
+        if (cache != null
+                && type.getKind() == TypeKind.DECLARED
+                && superType.getKind() == TypeKind.DECLARED) {
+            DeclaredType superUnderlying = ((AnnotatedDeclaredType) superType).getUnderlyingType();
+            key = TypeCacheKey.of(type, superUnderlying.asElement());
+            if (key != null) {
+                AnnotatedDeclaredType cached = cache.getCounted(key);
+                if (cached != null) {
+                    return (T) cached.deepCopy();
+                }
+            }
+        }
+
         // This visitor modifies superType and may return type, so pass it copies so that the
         // parameters to asSuper are not changed and a copy is returned.
         AnnotatedTypeMirror copyType = type.deepCopy();
@@ -72,6 +91,9 @@ public class AsSuperVisitor extends AbstractAtmComboVisitor<AnnotatedTypeMirror,
                     "AsSuperVisitor returned null.\ntype: %s\nsuperType: %s", type, copySuperType);
         }
 
+        if (key != null && result.getKind() == TypeKind.DECLARED) {
+            cache.put(key, (AnnotatedDeclaredType) result.deepCopy());
+        }
         return (T) result;
     }
 
@@ -0,0 +1,165 @@
+package org.checkerframework.framework.type;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * The set of primary annotations of an {@link AnnotatedTypeMirror}: a set with the same semantics
+ * as {@link AnnotationUtils#createAnnotationSet()}, stored in an array that is exactly as long as
+ * the set.
+ *
+ * <p>A type has at most one annotation per qualifier hierarchy, so its set is tiny, and a sorted
+ * array needs far less memory than the tree map behind a {@link java.util.TreeSet}. Each
+ * modification replaces the array, so an iterator sees the annotations the set had when the
+ * iterator was created, and adding annotations from a set to itself does not fail.
+ */
+final class CompactAnnotationSet extends AbstractSet<AnnotationMirror> {
+
+    /** The array of an empty set. */
+    private static final AnnotationMirror[] EMPTY = new AnnotationMirror[0];
+
+    /** The ordering of the annotations; {@link AnnotationUtils#annotationOrdering()}. */
+    private static final Comparator<AnnotationMirror> ORDERING =
+            AnnotationUtils.annotationOrdering();
+
+    /** The annotations, sorted by {@link #ORDERING}. */
+    private AnnotationMirror[] annotations = EMPTY;
+
+    /** Creates an empty set. */
+    CompactAnnotationSet() {}
+
+    /** Creates a set that contains the annotations of {@code annotations}. */
+    CompactAnnotationSet(Collection<? extends AnnotationMirror> annotations) {
+        if (annotations instanceof CompactAnnotationSet) {
+            this.annotations = ((CompactAnnotationSet) annotations).annotations;
+        } else {
+            addAll(annotations);
+        }
+    }
+
+    /**
+     * Returns the index of {@code anno} in {@link #annotations} if it is contained, and otherwise
+     * {@code -(insertion point) - 1}, like {@link java.util.Arrays#binarySearch(Object[], Object,
+     * Comparator)}.
+     */
+    private int indexOf(AnnotationMirror anno) {
+        // The array is too short for a binary search to pay off.
+        for (int i = 0; i < annotations.length; i++) {
+            int cmp = ORDERING.compare(annotations[i], anno);
+            if (cmp == 0) {
+                return i;
+            } else if (cmp > 0) {
+                return -i - 1;
+            }
+        }
+        return -annotations.length - 1;
+    }
+
+    @Override
+    public int size() {
+        return annotations.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return annotations.length == 0;
+    }
+
+    @Override
+    public boolean contains(/*@Nullable*/ Object o) {
+        return o instanceof AnnotationMirror && indexOf((AnnotationMirror) o) >= 0;
+    }
+
+    @Override
+    public boolean add(AnnotationMirror anno) {
+        if (anno == null) {
+            // Like a TreeSet with a comparator that does not permit null.
+            throw new NullPointerException();
+        }
+        int index = indexOf(anno);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        AnnotationMirror[] result = new AnnotationMirror[annotations.length + 1];
+        System.arraycopy(annotations, 0, result, 0, index);
+        result[index] = anno;
+        System.arraycopy(annotations, index, result, index + 1, annotations.length - index);
+        annotations = result;
+        return true;
+    }
+
+    @Override
+    public boolean remove(/*@Nullable*/ Object o) {
+        if (!(o instanceof AnnotationMirror)) {
+            return false;
+        }
+        int index = indexOf((AnnotationMirror) o);
+        if (index < 0) {
+            return false;
+        }
+        if (annotations.length == 1) {
+            annotations = EMPTY;
+            return true;
+        }
+        AnnotationMirror[] result = new AnnotationMirror[annotations.length - 1];
+        System.arraycopy(annotations, 0, result, 0, index);
+        System.arraycopy(annotations, index + 1, result, index, result.length - index);
+        annotations = result;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        annotations = EMPTY;
+    }
+
+    @Override
+    public Iterator<AnnotationMirror> iterator() {
+        return new Iterator<AnnotationMirror>() {
+            /** The annotations when the iterator was created. */
+            private final AnnotationMirror[] snapshot = annotations;
+
+            /** The index of the next annotation to return. */
+            private int next = 0;
+
+            /** The annotation returned last, if it was not removed yet. */
+            private /*@Nullable*/ AnnotationMirror last = null;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public AnnotationMirror next() {
+                if (next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                last = snapshot[next++];
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (!CompactAnnotationSet.this.remove(last)) {
+                    throw new ConcurrentModificationException();
+                }
+                last = null;
+            }
+        };
+    }
+}
@@ -1,5 +1,9 @@
 package org.checkerframework.framework.type;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import static org.checkerframework.framework.util.AnnotatedTypes.isDeclarationOfJavaLangEnum;
 import static org.checkerframework.framework.util.AnnotatedTypes.isEnum;
 
@@ -33,6 +37,7 @@ import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.framework.util.TypeArgumentMapper;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
 
@@ -122,6 +127,20 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
      */
     protected final boolean ignoreUninferredTypeArguments;
 
+    /**
+     * A history that top-level subtype checks reuse instead of allocating a new one, or null while
+     * it is in use. A subtype check that starts while another one is running uses its own history.
+     */
+    private VisitHistory unusedVisitHistory = new VisitHistory();
+
+    /**
+     * The results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} for pairs of
+     * types without type variables, keyed by {@link #subtypeCacheKey}, or null if the results are
+     * not cached. The results depend on the results of asSuper, so the cache is cleared together
+     * with the asSuper cache of the type factory, whenever the compilation unit changes.
+     */
+    private LRUCache<List<Object>, Boolean> subtypeCache = null;
+
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
             final QualifierHierarchy qualifierHierarchy,
@@ -166,13 +185,55 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     @Override
     public boolean isSubtype(
             final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
+        List<Object> key = subtypeCache == null ? null : subtypeCacheKey(subtype, supertype);
+        if (key != null) {
+            Boolean result = subtypeCache.getCounted(key);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        boolean result = true;
         for (final AnnotationMirror top : qualifierHierarchy.getTopAnnotations()) {
             if (!isSubtype(subtype, supertype, top)) {
-                return false;
+                result = false;
+                break;
             }
         }
 
-        return true;
+        if (key != null) {
+            subtypeCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Caches the results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} in {@code
+     * cache}. Called by the {@link AnnotatedTypeFactory} that created this hierarchy, unless its
+     * caches are disabled.
+     */
+    void setSubtypeCache(LRUCache<List<Object>, Boolean> cache) {
+        this.subtypeCache = cache;
+    }
+
+    /** Removes all cached results of subtype checks; see {@link #setSubtypeCache}. */
+    void clearSubtypeCache() {
+        if (subtypeCache != null) {
+            subtypeCache.clear();
+        }
+    }
+
+    /**
+     * Returns the key of the pair of subtype and supertype in {@link #subtypeCache}, or null if the
+     * result for the pair must not be cached; see {@link TypeCacheKey}.
+     */
+    private static /*@Nullable*/ List<Object> subtypeCacheKey(
+            final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
+        List<Object> key = new ArrayList<>();
+        if (TypeCacheKey.append(subtype, key) && TypeCacheKey.append(supertype, key)) {
+            return key;
+        }
+        return null;
     }
 
     /**
@@ -189,7 +250,17 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
             final AnnotatedTypeMirror supertype,
             final AnnotationMirror top) {
         currentTop = top;
-        return isSubtype(subtype, supertype, new VisitHistory());
+        VisitHistory visited = unusedVisitHistory;
+        if (visited == null) {
+            return isSubtype(subtype, supertype, new VisitHistory());
+        }
+        unusedVisitHistory = null;
+        try {
+            return isSubtype(subtype, supertype, visited);
+        } finally {
+            visited.clear();
+            unusedVisitHistory = visited;
+        }
     }
 
     /**
@@ -859,15 +859,40 @@ public abstract class GenericAnnotatedTypeFactory<
         return flowResult.getFinalLocalValues();
     }
 
+    /**
+     * Returns the int supplied to the checker via the flowStoreCacheSize option, or 0 (which
+     * disables the cache of stores in {@link #flowResult}) if the option is not given.
+     *
+     * @return the maximum number of nodes whose stores are cached
+     * @see AnalysisResult#enableStoreCache(int)
+     */
+    private int getFlowStoreCacheSize() {
+        String option = checker.getOption("flowStoreCacheSize");
+        if (option == null) {
+            return 0;
+        }
+        try {
+            return Integer.valueOf(option);
+        } catch (NumberFormatException ex) {
+            ErrorReporter.errorAbort("flowStoreCacheSize was not an integer: " + option);
+            return 0; // dead code
+        }
+    }
+
     /**
      * Perform a org.checkerframework.dataflow analysis over a single class tree and its nested
      * classes.
+     *
+     * <p>The members are analyzed one after another. Their analyses cannot run concurrently,
+     * because the transfer functions query this factory, whose caches and visitor state are not
+     * thread-safe, and javac, which is not thread-safe either.
      */
     protected void performFlowAnalysis(ClassTree classTree) {
         if (flowResult == null) {
             regularExitStores = new IdentityHashMap<>();
             returnStatementStores = new IdentityHashMap<>();
             flowResult = new AnalysisResult<>();
+            flowResult.enableStoreCache(getFlowStoreCacheSize());
         }
 
         // no need to scan annotations
@@ -1093,10 +1118,9 @@ public abstract class GenericAnnotatedTypeFactory<
             }
         }
         analyses.getFirst().performAnalysis(cfg);
-        AnalysisResult<Value, Store> result = analyses.getFirst().getResult();
 
         // store result
-        flowResult.combine(result);
+        flowResult.combine(analyses.getFirst());
         if (ast.getKind() == UnderlyingAST.Kind.METHOD) {
             // store exit store (for checking postconditions)
             CFGMethod mast = (CFGMethod) ast;
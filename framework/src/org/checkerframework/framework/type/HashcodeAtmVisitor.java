@@ -1,6 +1,8 @@
 package org.checkerframework.framework.type;
 
+import javax.lang.model.element.AnnotationMirror;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.javacutil.AnnotationUtils;
 
 /**
  * Computes the hashcode of an AnnotatedTypeMirror using the underlying type and primary annotations
@@ -49,7 +51,10 @@ public class HashcodeAtmVisitor extends AnnotatedTypeScanner<Integer, Void> {
             return null;
         }
 
-        return type.getAnnotations().toString().hashCode() * 17
-                + type.getUnderlyingType().toString().hashCode() * 13;
+        int annotationsHashcode = 0;
+        for (AnnotationMirror anno : type.getAnnotations()) {
+            annotationsHashcode += AnnotationUtils.annotationHashCode(anno);
+        }
+        return annotationsHashcode * 17 + type.getUnderlyingType().toString().hashCode() * 13;
     }
 }
@@ -42,6 +42,12 @@ public class StructuralEqualityComparer extends AbstractAtmComboVisitor<Boolean,
     // explain this one
     private AnnotationMirror currentTop = null;
 
+    /**
+     * A history that {@link #areEqual} reuses instead of allocating a new one, or null while it is
+     * in use.
+     */
+    private VisitHistory unusedVisitHistory = new VisitHistory();
+
     public StructuralEqualityComparer() {
         this(null);
     }
@@ -71,7 +77,17 @@ public class StructuralEqualityComparer extends AbstractAtmComboVisitor<Boolean,
      * @return true if type1 and type2 are equal
      */
     public boolean areEqual(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        return AtmCombo.accept(type1, type2, new VisitHistory(), this);
+        VisitHistory visited = unusedVisitHistory;
+        if (visited == null) {
+            return AtmCombo.accept(type1, type2, new VisitHistory(), this);
+        }
+        unusedVisitHistory = null;
+        try {
+            return AtmCombo.accept(type1, type2, visited, this);
+        } finally {
+            visited.clear();
+            unusedVisitHistory = visited;
+        }
     }
 
     /**
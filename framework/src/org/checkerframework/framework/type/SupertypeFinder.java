@@ -28,6 +28,7 @@ import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeVisitor;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
@@ -42,13 +43,35 @@ class SupertypeFinder {
     // Version of method below for declared types
     /** @see Types#directSupertypes(TypeMirror) */
     public static List<AnnotatedDeclaredType> directSuperTypes(AnnotatedDeclaredType type) {
+        LRUCache<List<Object>, List<AnnotatedDeclaredType>> cache =
+                type.atypeFactory.directSuperTypesCache;
+        List<Object> key = cache == null ? null : TypeCacheKey.of(type);
+        if (key != null) {
+            List<AnnotatedDeclaredType> cached = cache.getCounted(key);
+            if (cached != null) {
+                return deepCopies(cached);
+            }
+        }
+
         SupertypeFindingVisitor supertypeFindingVisitor =
                 new SupertypeFindingVisitor(type.atypeFactory);
         List<AnnotatedDeclaredType> supertypes = supertypeFindingVisitor.visitDeclared(type, null);
         type.atypeFactory.postDirectSuperTypes(type, supertypes);
+        if (key != null) {
+            cache.put(key, deepCopies(supertypes));
+        }
         return supertypes;
     }
 
+    /** Returns a new list of deep copies of the types in {@code types}. */
+    private static List<AnnotatedDeclaredType> deepCopies(List<AnnotatedDeclaredType> types) {
+        List<AnnotatedDeclaredType> copies = new ArrayList<>(types.size());
+        for (AnnotatedDeclaredType type : types) {
+            copies.add(type.deepCopy());
+        }
+        return copies;
+    }
+
     // Version of method above for all types
     /** @see Types#directSupertypes(TypeMirror) */
     public static final List<? extends AnnotatedTypeMirror> directSuperTypes(
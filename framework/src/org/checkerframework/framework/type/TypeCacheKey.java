@@ -0,0 +1,95 @@
+package org.checkerframework.framework.type;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * Builds the keys of caches whose values are computed from annotated types, such as the subtype
+ * cache of {@link DefaultTypeHierarchy} and the asSuper and direct supertype caches of {@link
+ * AnnotatedTypeFactory}.
+ *
+ * <p>Only primitive, array, and declared types whose type arguments are again such types have a
+ * key: these types are fully described by their kinds, classes, and annotations. Types that
+ * contain type variables or wildcards would also need their bounds, and they have no key. The key
+ * lists the kinds, classes, and canonical annotations of a type and of its component types; see
+ * {@link AnnotationUtils#canonicalAnnotation(AnnotationMirror)}. Two types have equal keys iff
+ * they are structurally equal.
+ */
+final class TypeCacheKey {
+
+    // Class cannot be instantiated.
+    private TypeCacheKey() {
+        throw new AssertionError("Class TypeCacheKey cannot be instantiated.");
+    }
+
+    /**
+     * Returns the key of {@code type}, or null if the type has none.
+     *
+     * @param type the type
+     * @param extra additional objects that the cached value depends on, appended to the key
+     * @return the key of {@code type} and {@code extra}, or null
+     */
+    static /*@Nullable*/ List<Object> of(AnnotatedTypeMirror type, Object... extra) {
+        List<Object> key = new ArrayList<>();
+        if (!append(type, key)) {
+            return null;
+        }
+        for (Object o : extra) {
+            key.add(o);
+        }
+        return key;
+    }
+
+    /**
+     * Appends a description of {@code type} to {@code key}. The description of a type is never a
+     * prefix of the description of another type, so descriptions of several types can be appended
+     * to the same key.
+     *
+     * @return false if the type has no key, for example because it contains a type variable
+     */
+    static boolean append(AnnotatedTypeMirror type, List<Object> key) {
+        TypeKind kind = type.getKind();
+        key.add(kind);
+        Set<AnnotationMirror> annotations = type.getAnnotationsField();
+        key.add(annotations.size());
+        for (AnnotationMirror anno : annotations) {
+            key.add(AnnotationUtils.canonicalAnnotation(anno));
+        }
+
+        if (kind.isPrimitive()) {
+            return true;
+        } else if (kind == TypeKind.ARRAY) {
+            return append(((AnnotatedArrayType) type).getComponentType(), key);
+        } else if (kind == TypeKind.DECLARED) {
+            AnnotatedDeclaredType declaredType = (AnnotatedDeclaredType) type;
+            DeclaredType underlying = declaredType.getUnderlyingType();
+            if (underlying.getEnclosingType().getKind() != TypeKind.NONE) {
+                // The annotations of the enclosing type are not part of the key.
+                return false;
+            }
+            key.add(underlying.asElement());
+            key.add(declaredType.wasRaw());
+            List<AnnotatedTypeMirror> typeArgs = declaredType.getTypeArguments();
+            key.add(typeArgs.size());
+            for (AnnotatedTypeMirror typeArg : typeArgs) {
+                if (!append(typeArg, key)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+}
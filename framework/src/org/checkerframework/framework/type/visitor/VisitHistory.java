@@ -1,7 +1,8 @@
 package org.checkerframework.framework.type.visitor;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.javacutil.Pair;
@@ -20,22 +21,51 @@ import org.checkerframework.javacutil.Pair;
  * but with a different supertype. For example, if the two types are {@code @A T extends @B
  * Serializable<T>} and {@code @C Serializable<?>}, then isSubtype is first called one those types
  * and then on {@code @B Serializable<T>} and {@code @C Serializable<?>}.
+ *
+ * <p>A history is usually small, so the pairs are kept in arrays rather than in a hash set, and
+ * {@link AnnotatedTypeMirror#hashCode()}, which visits the whole type, is never called. A pair is
+ * first looked up by identity. Types that are visited again are often copies, such as the result
+ * of asSuper, so a pair of equal types also counts as visited; {@link
+ * AnnotatedTypeMirror#equals(Object)} is only called for pairs with the same underlying types.
  */
 public class VisitHistory {
 
-    private final Set<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visited;
+    /** The initial length of the arrays. */
+    private static final int INITIAL_CAPACITY = 8;
 
-    public VisitHistory() {
-        this.visited = new HashSet<>();
-    }
+    /** The first types of the visited pairs. */
+    private AnnotatedTypeMirror[] firstTypes = new AnnotatedTypeMirror[INITIAL_CAPACITY];
+
+    /** The second types of the visited pairs. */
+    private AnnotatedTypeMirror[] secondTypes = new AnnotatedTypeMirror[INITIAL_CAPACITY];
+
+    /** The {@link #underlyingHash}es of the visited pairs. */
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    /** The number of visited pairs. */
+    private int size = 0;
+
+    public VisitHistory() {}
 
     public void clear() {
-        visited.clear();
+        Arrays.fill(firstTypes, 0, size, null);
+        Arrays.fill(secondTypes, 0, size, null);
+        size = 0;
     }
 
     /** Add a visit for type1 and type2. */
     public void add(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        this.visited.add(Pair.of(type1, type2));
+        // Clients call contains first, so the pair is not looked up again.
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            firstTypes = Arrays.copyOf(firstTypes, capacity);
+            secondTypes = Arrays.copyOf(secondTypes, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        firstTypes[size] = type1;
+        secondTypes[size] = type2;
+        hashes[size] = underlyingHash(type1, type2);
+        size++;
     }
 
     /**
@@ -45,11 +75,63 @@ public class VisitHistory {
      * @return true if an equivalent pair has already been added to the history
      */
     public boolean contains(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        return this.visited.contains(Pair.of(type1, type2));
+        return indexOf(type1, type2, underlyingHash(type1, type2)) >= 0;
+    }
+
+    /**
+     * Returns the index of the pair of type1 and type2, or of an equivalent pair, or -1 if there is
+     * none.
+     *
+     * @param hash {@code underlyingHash(type1, type2)}
+     */
+    private int indexOf(
+            final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2, int hash) {
+        for (int i = 0; i < size; i++) {
+            if (firstTypes[i] == type1 && secondTypes[i] == type2) {
+                return i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash
+                    && equal(firstTypes[i], type1)
+                    && equal(secondTypes[i], type2)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a hash code of the underlying types of type1 and type2. Equal annotated types have
+     * equal underlying types, and computing the hash code of an underlying type is cheap.
+     */
+    private static int underlyingHash(
+            final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
+        int hash = 31;
+        if (type1 != null) {
+            hash += 17 * type1.getUnderlyingType().hashCode();
+        }
+        if (type2 != null) {
+            hash += 13 * type2.getUnderlyingType().hashCode();
+        }
+        return hash;
+    }
+
+    private static boolean equal(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2) {
+        // AnnotatedTypeMirror.equals fails for types of different classes.
+        return type1 == type2
+                || (type1 != null
+                        && type2 != null
+                        && type1.getClass() == type2.getClass()
+                        && type1.equals(type2));
     }
 
     @Override
     public String toString() {
+        List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visited = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            visited.add(Pair.of(firstTypes[i], secondTypes[i]));
+        }
         return "VisitHistory( " + PluginUtil.join(", ", visited) + " )";
     }
 }
@@ -22,13 +22,13 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -850,7 +850,13 @@ public class AnnotatedTypes {
         return found;
     }
 
-    private static Map<TypeElement, Boolean> isTypeAnnotationCache = new IdentityHashMap<>();
+    /**
+     * Caches the result of {@link #isTypeAnnotation} for each annotation type. Elements use
+     * identity equality, and the keys are weak so that the elements of a finished compilation can
+     * be garbage-collected when the checker runs several compilations, as in a {@link
+     * CheckerDaemon}.
+     */
+    private static Map<TypeElement, Boolean> isTypeAnnotationCache = new WeakHashMap<>();
 
     public static boolean isTypeAnnotation(AnnotationMirror anno, Class<?> cls) {
         TypeElement elem = (TypeElement) anno.getAnnotationType().asElement();
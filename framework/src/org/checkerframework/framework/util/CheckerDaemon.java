@@ -0,0 +1,489 @@
+package org.checkerframework.framework.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A long-lived Java virtual machine that runs compilations on behalf of {@link CheckerMain}.
+ *
+ * <p>Every compilation run by {@link CheckerMain} starts a new JVM, which loads the compiler and
+ * the checkers, discovers the qualifiers of each checker and parses its stub files before it
+ * compiles anything, and which is not yet JIT-compiled when it does. For a small compilation this
+ * takes much longer than the type-checking itself. A daemon pays these costs once:
+ *
+ * <pre>{@code
+ * java -Xbootclasspath/p:javac.jar -ea -ea:com.sun.tools... -cp checker.jar \
+ *     org.checkerframework.framework.util.CheckerDaemon DAEMON_FILE &
+ * java -jar checker.jar -daemonFile DAEMON_FILE -processor nullness ...
+ * }</pre>
+ *
+ * The daemon writes its port and a secret to {@code DAEMON_FILE}, which only its owner can read,
+ * and runs only compilations that present the secret. {@link CheckerMain} runs the compilation in
+ * a new JVM as usual if no daemon answers, if the compilation needs JVM options ({@code -J}), or if
+ * the daemon refuses it because it runs in another working directory: javac resolves relative
+ * paths against the working directory of the process.
+ *
+ * <p>A checker named by {@code -processor} is instantiated from the classpath of the daemon, and
+ * not loaded by javac from the processor path, if the daemon loads it from a jar file or directory
+ * on the processor path. Its classes therefore stay loaded and compiled between compilations, and
+ * so do the caches that do not depend on the compilation, such as the parsed stub files of {@link
+ * org.checkerframework.framework.stub.StubCache}. The state of a compilation is kept in its javac
+ * context, like the warnings that the stub parsers issued, or is released after the compilation,
+ * like the annotations cached by {@link AnnotationUtils} and the checkers that requested a {@link
+ * SourceChecker#runShutdownHooks shutdown hook}, whose hooks the daemon runs after each
+ * compilation. The jar files on the classpath are read again by each compilation, because a build
+ * may change them.
+ *
+ * <p>What a compilation prints to {@code System.out}, such as the statistics of {@code
+ * -AresourceStats}, is printed to the standard output of {@link CheckerMain}, and what it prints to
+ * {@code System.err} is printed after the diagnostics of javac.
+ *
+ * <p>Compilations are run one at a time, because neither javac nor the Checker Framework is
+ * thread-safe.
+ */
+public class CheckerDaemon {
+
+    /**
+     * Option name for {@link CheckerMain} that specifies the file written by a running daemon. The
+     * accompanying value MUST be the path to that file.
+     */
+    public static final String DAEMON_FILE_OPT = "-daemonFile";
+
+    /** The version of the protocol between {@link CheckerMain} and the daemon. */
+    private static final int PROTOCOL_VERSION = 2;
+
+    /**
+     * How long the daemon waits for data from {@link CheckerMain}, in milliseconds. {@link
+     * CheckerMain} sends a compilation at once, so the daemon does not wait longer for a client
+     * that fails to send it.
+     */
+    private static final int READ_TIMEOUT = 10000;
+
+    /** The maximum length of a string sent between {@link CheckerMain} and the daemon. */
+    private static final int MAX_STRING_LENGTH = 1 << 26;
+
+    /** The response to a compilation that the daemon ran. */
+    private static final int RAN = 0;
+
+    /** The response to a compilation that the daemon refused to run. */
+    private static final int REFUSED = 1;
+
+    /** The exit status of javac for invalid command-line arguments. */
+    private static final int EXIT_CMDERR = 2;
+
+    /** The exit status of javac for an exception in the compiler or in an annotation processor. */
+    private static final int EXIT_ABNORMAL = 4;
+
+    /** The compiler that runs all compilations. */
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /** The working directory of the daemon, which compilations must share. */
+    private final String workingDirectory = new File("").getAbsolutePath();
+
+    /** The secret that a compilation must present. */
+    private final String secret;
+
+    private CheckerDaemon(String secret) {
+        this.secret = secret;
+    }
+
+    /**
+     * Runs a daemon until its JVM is stopped.
+     *
+     * @param args the file to which the daemon writes its port and secret
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: CheckerDaemon DAEMON_FILE");
+            System.exit(EXIT_CMDERR);
+        }
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder secret = new StringBuilder();
+        for (byte b : bytes) {
+            secret.append(String.format("%02x", b));
+        }
+
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        File daemonFile = new File(args[0]);
+        writeDaemonFile(daemonFile, server.getLocalPort() + " " + secret);
+        daemonFile.deleteOnExit();
+        System.out.println(
+                "CheckerDaemon: listening on port "
+                        + server.getLocalPort()
+                        + " for compilations in "
+                        + new File("").getAbsolutePath());
+        new CheckerDaemon(secret.toString()).serve(server);
+    }
+
+    /** Writes {@code contents} to {@code file}, readable only by its owner if possible. */
+    private static void writeDaemonFile(File file, String contents) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(
+                    path,
+                    PosixFilePermissions.asFileAttribute(
+                            PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the file inherits the permissions of its directory.
+            Files.createFile(path);
+        }
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Runs the compilations sent to {@code server}, one at a time. */
+    private void serve(ServerSocket server) {
+        while (true) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(READ_TIMEOUT);
+                handle(socket);
+            } catch (SocketTimeoutException e) {
+                System.err.println("CheckerDaemon: a client did not send a compilation in time");
+            } catch (IOException e) {
+                System.err.println("CheckerDaemon: " + e);
+            }
+        }
+    }
+
+    /** Reads a compilation from {@code socket}, runs it and sends the result. */
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (in.readInt() != PROTOCOL_VERSION) {
+            refuse(out, "the daemon uses another protocol version");
+            return;
+        }
+        byte[] presented = readString(in).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(presented, secret.getBytes(StandardCharsets.UTF_8))) {
+            refuse(out, "wrong secret");
+            return;
+        }
+        String directory = readString(in);
+        int count = in.readInt();
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            args.add(readString(in));
+        }
+        if (!directory.equals(workingDirectory)) {
+            refuse(out, "the daemon runs in " + workingDirectory);
+            return;
+        }
+
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        System.setOut(new PrintStream(stdout, true, "UTF-8"));
+        System.setErr(new PrintStream(stderr, true, "UTF-8"));
+        int exitStatus;
+        try {
+            exitStatus = compile(args, writer);
+            SourceChecker.runShutdownHooks();
+        } catch (Throwable t) {
+            t.printStackTrace(writer);
+            exitStatus = EXIT_ABNORMAL;
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            // Release the annotations of the compilation.
+            AnnotationUtils.clear();
+        }
+        writer.print(stderr.toString("UTF-8"));
+        writer.flush();
+
+        out.writeInt(RAN);
+        writeString(out, stdout.toString("UTF-8"));
+        writeString(out, output.toString());
+        out.writeInt(exitStatus);
+        out.flush();
+    }
+
+    /** Tells the client that the daemon does not run its compilation, and why. */
+    private static void refuse(DataOutputStream out, String reason) throws IOException {
+        out.writeInt(REFUSED);
+        writeString(out, reason);
+        out.flush();
+    }
+
+    /**
+     * Runs javac with the given command-line arguments.
+     *
+     * @param args the command-line arguments of javac, which may include @argfiles
+     * @param writer where javac prints its diagnostics
+     * @return the exit status of javac
+     */
+    private int compile(List<String> args, PrintWriter writer) throws IOException {
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            List<String> options = new ArrayList<>();
+            List<String> classNames = new ArrayList<>();
+            List<File> sourceFiles = new ArrayList<>();
+            List<String> expanded = expandArgFiles(args);
+            for (int i = 0; i < expanded.size(); i++) {
+                String arg = expanded.get(i);
+                int arguments = compiler.isSupportedOption(arg);
+                if (arguments < 0) {
+                    arguments = fileManager.isSupportedOption(arg);
+                }
+                if (arguments >= 0) {
+                    if (i + arguments >= expanded.size()) {
+                        writer.println("javac: " + arg + " requires an argument");
+                        return EXIT_CMDERR;
+                    }
+                    options.addAll(expanded.subList(i, i + arguments + 1));
+                    i += arguments;
+                } else if (arg.endsWith(".java")) {
+                    sourceFiles.add(new File(arg));
+                } else if (arg.startsWith("-")) {
+                    writer.println("javac: invalid flag: " + arg);
+                    return EXIT_CMDERR;
+                } else {
+                    classNames.add(arg);
+                }
+            }
+
+            Iterable<? extends JavaFileObject> compilationUnits =
+                    fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+            JavaCompiler.CompilationTask task;
+            try {
+                task =
+                        compiler.getTask(
+                                writer, fileManager, null, options, classNames, compilationUnits);
+            } catch (IllegalArgumentException e) {
+                writer.println("javac: " + e.getMessage());
+                return EXIT_CMDERR;
+            }
+            List<Processor> processors = createProcessors(options);
+            if (processors != null) {
+                task.setProcessors(processors);
+            }
+            return task.call() ? 0 : 1;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Returns the processors named by the {@code -processor} option in {@code options}, or null if
+     * javac should load them: if there is no such option, or if some processor is not loaded by the
+     * daemon from a jar file or directory on the processor path of the compilation.
+     */
+    private static /*@Nullable*/ List<Processor> createProcessors(List<String> options) {
+        String processorNames = lastValue(options, "-processor");
+        String path = lastValue(options, "-processorpath");
+        if (path == null) {
+            path = lastValue(options, "-classpath");
+        }
+        if (processorNames == null || path == null) {
+            return null;
+        }
+
+        List<File> pathEntries = new ArrayList<>();
+        for (String entry : path.split(File.pathSeparator)) {
+            pathEntries.add(canonical(new File(entry)));
+        }
+        List<Processor> processors = new ArrayList<>();
+        for (String name : processorNames.split(",")) {
+            try {
+                Class<?> cls = Class.forName(name, false, CheckerDaemon.class.getClassLoader());
+                CodeSource source = cls.getProtectionDomain().getCodeSource();
+                if (source == null) {
+                    return null;
+                }
+                File location = canonical(new File(source.getLocation().toURI()));
+                if (!pathEntries.contains(location)) {
+                    return null;
+                }
+                processors.add(cls.asSubclass(Processor.class).newInstance());
+            } catch (ClassNotFoundException
+                    | ClassCastException
+                    | URISyntaxException
+                    | IllegalArgumentException
+                    | InstantiationException
+                    | IllegalAccessException e) {
+                return null;
+            }
+        }
+        return processors;
+    }
+
+    /** Returns the value of the last occurrence of {@code option} in {@code options}, or null. */
+    private static /*@Nullable*/ String lastValue(List<String> options, String option) {
+        int index = options.lastIndexOf(option);
+        return index == -1 || index == options.size() - 1 ? null : options.get(index + 1);
+    }
+
+    /** Returns the canonical form of {@code file}, or its absolute form if that fails. */
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Replaces each argument {@code @file} by the arguments in the file, which are separated by
+     * white space and may be enclosed in single or double quotes, as javac does.
+     */
+    private static List<String> expandArgFiles(List<String> args) throws IOException {
+        List<String> expanded = new ArrayList<>(args.size());
+        for (String arg : args) {
+            if (!arg.startsWith("@")) {
+                expanded.add(arg);
+                continue;
+            }
+            String contents =
+                    new String(
+                            Files.readAllBytes(new File(arg.substring(1)).toPath()),
+                            StandardCharsets.UTF_8);
+            StringBuilder token = null;
+            char quote = 0;
+            for (int i = 0; i < contents.length(); i++) {
+                char c = contents.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    } else {
+                        token.append(c);
+                    }
+                } else if (Character.isWhitespace(c)) {
+                    if (token != null) {
+                        expanded.add(token.toString());
+                        token = null;
+                    }
+                } else {
+                    if (token == null) {
+                        token = new StringBuilder();
+                    }
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else {
+                        token.append(c);
+                    }
+                }
+            }
+            if (token != null) {
+                expanded.add(token.toString());
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Runs a compilation in the daemon that wrote {@code daemonFile}, and prints its diagnostics to
+     * {@code err}.
+     *
+     * @param daemonFile the file written by the daemon
+     * @param args the command-line arguments of javac
+     * @param out where to print what the compilation printed to {@code System.out}
+     * @param err where to print the diagnostics of javac
+     * @return the exit status of javac, or null if no daemon answered or if the daemon refused to
+     *     run the compilation
+     */
+    public static /*@Nullable*/ Integer compile(
+            File daemonFile, List<String> args, PrintStream out, PrintStream err) {
+        String[] portAndSecret;
+        try {
+            portAndSecret =
+                    new String(Files.readAllBytes(daemonFile.toPath()), StandardCharsets.UTF_8)
+                            .trim()
+                            .split(" ");
+        } catch (IOException e) {
+            return null;
+        }
+        if (portAndSecret.length != 2) {
+            return null;
+        }
+
+        try (Socket socket =
+                new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(portAndSecret[0]))) {
+            DataOutputStream request =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            request.writeInt(PROTOCOL_VERSION);
+            writeString(request, portAndSecret[1]);
+            writeString(request, new File("").getAbsolutePath());
+            request.writeInt(args.size());
+            for (String arg : args) {
+                writeString(request, arg);
+            }
+            request.flush();
+
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != RAN) {
+                err.println("CheckerDaemon refused the compilation: " + readString(in));
+                return null;
+            }
+            out.print(readString(in));
+            out.flush();
+            err.print(readString(in));
+            err.flush();
+            return in.readInt();
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code s} as its length followed by its UTF-8 encoding. Unlike {@link
+     * DataOutputStream#writeUTF}, this allows strings longer than 65535 bytes, such as long
+     * classpaths and the output of a compilation.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a string written by {@link #writeString}. */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
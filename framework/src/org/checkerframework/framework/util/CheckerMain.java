@@ -84,6 +84,9 @@ public class CheckerMain {
 
     private final List<File> argListFiles;
 
+    /** The file written by a running {@link CheckerDaemon}, or null if no daemon should be used. */
+    private final File daemonFile;
+
     /**
      * Construct all the relevant file locations and Java version given the path to this jar and a
      * set of directories in which to search for jars.
@@ -104,6 +107,8 @@ public class CheckerMain {
         this.jdkJar =
                 extractFileArg(PluginUtil.JDK_PATH_OPT, new File(searchPath, jdkJarName), args);
 
+        this.daemonFile = extractFileArg(CheckerDaemon.DAEMON_FILE_OPT, null, args);
+
         this.compilationBootclasspath = createCompilationBootclasspath(args);
         this.runtimeBootClasspath = createRuntimeBootclasspath(args);
         this.jvmOpts = extractJvmOpts(args);
@@ -384,6 +389,19 @@ public class CheckerMain {
 
         addMainToArgs(args);
 
+        args.addAll(getCompilerArguments(true));
+        return args;
+    }
+
+    /**
+     * Returns the arguments of the JSR308 Type Annotations Compiler, which follow its main class in
+     * the arguments of {@link #getExecArguments()}.
+     *
+     * @param quotePaths whether to quote the classpath and processorpath if they contain spaces
+     */
+    private List<String> getCompilerArguments(boolean quotePaths) {
+        List<String> args = new ArrayList<String>(toolOpts.size() + 5);
+
         // No classes on the compilation bootclasspath will be loaded
         // during compilation, but the classes are read by the compiler
         // without loading them.  The compiler assumes that any class on
@@ -398,11 +416,13 @@ public class CheckerMain {
 
         if (!argsListHasClassPath(argListFiles)) {
             args.add("-classpath");
-            args.add(quote(PluginUtil.join(File.pathSeparator, cpOpts)));
+            String classpath = PluginUtil.join(File.pathSeparator, cpOpts);
+            args.add(quotePaths ? quote(classpath) : classpath);
         }
         if (!argsListHasProcessorPath(argListFiles)) {
             args.add("-processorpath");
-            args.add(quote(PluginUtil.join(File.pathSeparator, ppOpts)));
+            String processorpath = PluginUtil.join(File.pathSeparator, ppOpts);
+            args.add(quotePaths ? quote(processorpath) : processorpath);
         }
 
         args.addAll(toolOpts);
@@ -416,6 +436,7 @@ public class CheckerMain {
     public int invokeCompiler() {
         List<String> args = getExecArguments();
 
+        boolean hasOutputArgsToFile = false;
         for (int i = 0; i < args.size(); i++) {
             String arg = args.get(i);
 
@@ -423,10 +444,29 @@ public class CheckerMain {
                 String fileName = arg.substring(19);
                 args.remove(i);
                 outputArgumentsToFile(fileName, args);
+                hasOutputArgsToFile = true;
                 break;
             }
         }
 
+        // A daemon cannot honor JVM options, which the compiler JVM would be started with.
+        if (daemonFile != null && jvmOpts.isEmpty()) {
+            List<String> compilerArgs = getCompilerArguments(false);
+            if (hasOutputArgsToFile) {
+                for (int i = 0; i < compilerArgs.size(); i++) {
+                    if (compilerArgs.get(i).startsWith("-AoutputArgsToFile=")) {
+                        compilerArgs.remove(i);
+                        break;
+                    }
+                }
+            }
+            Integer exitStatus =
+                    CheckerDaemon.compile(daemonFile, compilerArgs, System.out, System.err);
+            if (exitStatus != null) {
+                return exitStatus;
+            }
+        }
+
         // Actually invoke the compiler
         return ExecUtil.execute(args.toArray(new String[args.size()]), System.out, System.err);
     }
@@ -17,8 +17,14 @@ import com.sun.tools.javac.code.Symbol.PackageSymbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Type.ArrayType;
 import com.sun.tools.javac.code.Type.ClassType;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -51,6 +57,7 @@ import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.InternalUtils;
+import org.checkerframework.javacutil.LRUCache;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.Resolver;
 import org.checkerframework.javacutil.TreeUtils;
@@ -111,6 +118,14 @@ public class FlowExpressionParseUtil {
     /** Matches an expression contained in matching start and end parentheses */
     protected static final Pattern parenthesesPattern = anchored("\\((.*)\\)");
 
+    /**
+     * Maps an expression string, and whether it is the member part of a member select, to its
+     * parse tree. The tree does not depend on the context in which the string is parsed, so the
+     * patterns above are matched against each string only once.
+     */
+    private static final LRUCache<Pair<String, Boolean>, ParsedExpression> parsedExpressions =
+            new LRUCache<>("flowExpressionCache", 2000);
+
     /**
      * Parse a string and return its representation as a {@link Receiver}, or throw an {@link
      * FlowExpressionParseException}.
@@ -135,63 +150,105 @@ public class FlowExpressionParseUtil {
         return result;
     }
 
+    /**
+     * Parses {@code expression} and resolves it in {@code context}. The parse tree of the
+     * expression is cached in {@link #parsedExpressions}; only resolving it depends on the
+     * context.
+     */
     private static FlowExpressions.Receiver parseHelper(
             String expression, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        expression = expression.trim();
+        return bind(getParsedExpression(expression, context.parsingMember), context, path);
+    }
+
+    /**
+     * Resolves the parse tree {@code parsed} in {@code context}. The tree must have been parsed
+     * with the {@link FlowExpressionContext#parsingMember} flag of the context.
+     */
+    private static FlowExpressions.Receiver bind(
+            ParsedExpression parsed, FlowExpressionContext context, TreePath path)
+            throws FlowExpressionParseException {
+        String s = parsed.text;
 
         ProcessingEnvironment env = context.checkerContext.getProcessingEnvironment();
         Types types = env.getTypeUtils();
 
-        if (isNullLiteral(expression, context)) {
-            return parseNullLiteral(expression, types);
-        } else if (isIntLiteral(expression, context)) {
-            return parseIntLiteral(expression, types);
-        } else if (isLongLiteral(expression, context)) {
-            return parseLongLiteral(expression, types);
-        } else if (isStringLiteral(expression, context)) {
-            return parseStringLiteral(expression, types, env.getElementUtils());
-        } else if (isThisLiteral(expression, context)) {
-            return parseThis(expression, context);
-        } else if (isSuperLiteral(expression, context)) {
-            return parseSuper(expression, types, context);
-        } else if (isIdentifier(expression, context)) {
-            return parseIdentifier(expression, env, path, context);
-        } else if (isParameter(expression, context)) {
-            return parseParameter(expression, context);
-        } else if (isArray(expression, context)) {
-            return parseArray(expression, context, path);
-        } else if (isMethod(expression, context)) {
-            return parseMethod(expression, context, path, env);
-        } else if (isMemberSelect(expression, context)) {
-            return parseMemberSelect(expression, env, context, path);
-        } else if (isParentheses(expression, context)) {
-            return parseParentheses(expression, context, path);
-        } else {
-            throw constructParserException(expression, "could not parse string");
+        switch (parsed.kind) {
+            case NULL_LITERAL:
+                return parseNullLiteral(s, types);
+            case INT_LITERAL:
+                return parseIntLiteral(s, types);
+            case LONG_LITERAL:
+                return parseLongLiteral(s, types);
+            case STRING_LITERAL:
+                return parseStringLiteral(s, types, env.getElementUtils());
+            case THIS:
+                return parseThis(s, context);
+            case SUPER:
+                return parseSuper(s, types, context);
+            case IDENTIFIER:
+                return parseIdentifier(s, env, path, context);
+            case PARAMETER:
+                return parseParameter(parsed, context);
+            case ARRAY:
+                return parseArray(parsed, context, path);
+            case METHOD:
+                return parseMethod(parsed, context, path, env);
+            case MEMBER_SELECT:
+                return parseMemberSelect(parsed, env, context, path);
+            case PARENTHESES:
+                return parseParentheses(parsed, context, path);
+            default:
+                throw constructParserException(s, parsed.name);
+        }
+    }
+
+    /**
+     * Returns the parse tree of {@code expression}.
+     *
+     * @param expression the expression string, possibly surrounded by whitespace
+     * @param parsingMember whether {@code expression} is the member part of a member select
+     */
+    private static ParsedExpression getParsedExpression(String expression, boolean parsingMember) {
+        Pair<String, Boolean> key = Pair.of(expression, parsingMember);
+        synchronized (parsedExpressions) {
+            ParsedExpression parsed = parsedExpressions.getCounted(key);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        ParsedExpression parsed = ParsedExpression.parse(expression.trim(), parsingMember);
+        synchronized (parsedExpressions) {
+            parsedExpressions.put(key, parsed);
         }
+        return parsed;
     }
 
-    private static boolean isMemberSelect(String s, FlowExpressionContext context) {
-        Matcher dotMatcher = memberselect.matcher(s);
-        return dotMatcher.matches();
+    /** @return a one-line summary of the hits and misses of the cache of parsed expressions */
+    public static String getCacheStatistics() {
+        synchronized (parsedExpressions) {
+            return parsedExpressions.getStatistics();
+        }
     }
 
     private static Receiver parseMemberSelect(
-            String s, ProcessingEnvironment env, FlowExpressionContext context, TreePath path)
+            ParsedExpression parsed,
+            ProcessingEnvironment env,
+            FlowExpressionContext context,
+            TreePath path)
             throws FlowExpressionParseException {
-        Matcher dotMatcher = memberselect.matcher(s);
-        if (!dotMatcher.matches()) {
-            assert false : "isMemberSelect must be called first";
-        }
+        String s = parsed.text;
         Receiver receiver;
         String memberSelected;
-
-        Resolver resolver = new Resolver(env);
+        ParsedExpression member;
 
         // Attempt to match a package and class name first.
-        Pair<ClassName, String> classAndRemainingString =
-                matchPackageAndClassNameWithinExpression(s, resolver, path);
+        Pair<ClassName, String> classAndRemainingString = null;
+        if (parsed.mayStartWithPackage) {
+            Resolution resolution = Resolution.of(env);
+            classAndRemainingString =
+                    matchPackageAndClassNameWithinExpression(s, resolution, path);
+        }
         if (classAndRemainingString != null) {
             receiver = classAndRemainingString.first;
             memberSelected = classAndRemainingString.second;
@@ -199,10 +256,11 @@ public class FlowExpressionParseUtil {
                 throw constructParserException(
                         s, "a class cannot terminate a flow expression string");
             }
+            member = getParsedExpression(memberSelected, true);
         } else {
-            String receiverString = dotMatcher.group(1);
-            memberSelected = dotMatcher.group(2);
-            receiver = parseHelper(receiverString, context, path);
+            receiver = bind(parsed.parts.get(0), context, path);
+            member = parsed.parts.get(1);
+            memberSelected = member.text;
         }
 
         if (memberSelected.equals("class")) {
@@ -215,44 +273,20 @@ public class FlowExpressionParseUtil {
 
         // Parse the rest, with a new receiver.
         FlowExpressionContext newContext = context.copyChangeToParsingMemberOfReceiver(receiver);
-        return parseHelper(memberSelected, newContext, path);
+        return bind(member, newContext, path);
     }
 
     //########
 
-    private static boolean isNullLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher nullMatcher = nullPattern.matcher(s);
-        return nullMatcher.matches();
-    }
-
     private static Receiver parseNullLiteral(String expression, Types types) {
         return new ValueLiteral(types.getNullType(), (Object) null);
     }
 
-    private static boolean isIntLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher intMatcher = intPattern.matcher(s);
-        return intMatcher.matches();
-    }
-
     private static Receiver parseIntLiteral(String s, Types types) {
         int val = Integer.parseInt(s);
         return new ValueLiteral(types.getPrimitiveType(TypeKind.INT), val);
     }
 
-    private static boolean isLongLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher longMatcher = longPattern.matcher(s);
-        return longMatcher.matches();
-    }
-
     private static Receiver parseLongLiteral(String s, Types types) {
         //Remove L or l at the end of a long literal
         s = s.substring(0, s.length() - 1);
@@ -260,30 +294,12 @@ public class FlowExpressionParseUtil {
         return new ValueLiteral(types.getPrimitiveType(TypeKind.LONG), val);
     }
 
-    private static boolean isStringLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher stringMatcher = stringPattern.matcher(s);
-        return stringMatcher.matches();
-    }
-
     private static Receiver parseStringLiteral(String s, Types types, Elements elements) {
         TypeElement stringTypeElem = elements.getTypeElement("java.lang.String");
         return new ValueLiteral(
                 types.getDeclaredType(stringTypeElem), s.substring(1, s.length() - 1));
     }
 
-    private static boolean isThisLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            // TODO: this is probably wrong because you could have and inner class receiver
-            // Outer.this
-            return false;
-        }
-        Matcher thisMatcher = thisPattern.matcher(s);
-        return thisMatcher.matches();
-    }
-
     private static Receiver parseThis(String s, FlowExpressionContext context) {
         if (!(context.receiver == null || context.receiver.containsUnknown())) {
             // "this" is the receiver of the context
@@ -293,14 +309,6 @@ public class FlowExpressionParseUtil {
         }
     }
 
-    private static boolean isSuperLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher superMatcher = superPattern.matcher(s);
-        return superMatcher.matches();
-    }
-
     private static Receiver parseSuper(String s, Types types, FlowExpressionContext context)
             throws FlowExpressionParseException {
         // super literal
@@ -324,15 +332,10 @@ public class FlowExpressionParseUtil {
         return new ThisReference(superType);
     }
 
-    private static boolean isIdentifier(String s, FlowExpressionContext context) {
-        Matcher identifierMatcher = identifierPattern.matcher(s);
-        return identifierMatcher.matches();
-    }
-
     private static Receiver parseIdentifier(
             String s, ProcessingEnvironment env, TreePath path, FlowExpressionContext context)
             throws FlowExpressionParseException {
-        Resolver resolver = new Resolver(env);
+        Resolver resolver = Resolution.of(env).resolver;
         if (!context.parsingMember && context.useLocalScope) {
             // Attempt to match a local variable within the scope of the
             // given path before attempting to match a field.
@@ -409,26 +412,14 @@ public class FlowExpressionParseUtil {
         return new FieldAccess(locationOfField, fieldType, fieldElem);
     }
 
-    private static boolean isParameter(String s, FlowExpressionContext contex) {
-        if (contex.parsingMember) {
-            return false;
-        }
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        return parameterMatcher.matches();
-    }
-
-    private static Receiver parseParameter(String s, FlowExpressionContext context)
+    private static Receiver parseParameter(ParsedExpression parsed, FlowExpressionContext context)
             throws FlowExpressionParseException {
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        if (!parameterMatcher.matches()) {
-            return null;
-        }
         if (context.arguments == null) {
-            throw constructParserException(s, "No parameter found.");
+            throw constructParserException(parsed.text, "No parameter found.");
         }
         int idx = -1;
         try {
-            idx = Integer.parseInt(parameterMatcher.group(1));
+            idx = Integer.parseInt(parsed.name);
         } catch (NumberFormatException e) {
             // cannot occur by the way the pattern is defined (matches only numbers)
             assert false;
@@ -440,26 +431,21 @@ public class FlowExpressionParseUtil {
         return context.arguments.get(idx - 1);
     }
 
-    private static boolean isMethod(String s, FlowExpressionContext contex) {
-        Matcher methodMatcher = methodPattern.matcher(s);
-        return methodMatcher.matches();
-    }
-
     private static Receiver parseMethod(
-            String s, FlowExpressionContext context, TreePath path, ProcessingEnvironment env)
+            ParsedExpression parsed,
+            FlowExpressionContext context,
+            TreePath path,
+            ProcessingEnvironment env)
             throws FlowExpressionParseException {
-        Matcher methodMatcher = methodPattern.matcher(s);
-
-        if (!methodMatcher.matches()) {
-            return null;
+        String s = parsed.text;
+        String methodName = parsed.name;
+
+        // resolve the arguments, which were split by ParameterListParser
+        FlowExpressionContext argumentContext = context.copyAndUseOuterReceiver();
+        List<Receiver> parameters = new ArrayList<>();
+        for (ParsedExpression argument : parsed.parts) {
+            parameters.add(bind(argument, argumentContext, path));
         }
-        String methodName = methodMatcher.group(1);
-
-        // parse parameter list
-        String parameterList = methodMatcher.group(2);
-        List<Receiver> parameters =
-                ParameterListParser.parseParameterList(
-                        parameterList, true, context.copyAndUseOuterReceiver(), path);
 
         // get types for parameters
         List<TypeMirror> parameterTypes = new ArrayList<>();
@@ -471,7 +457,7 @@ public class FlowExpressionParseUtil {
             Element element = null;
 
             // try to find the correct method
-            Resolver resolver = new Resolver(env);
+            Resolver resolver = Resolution.of(env).resolver;
             TypeMirror receiverType = context.receiver.getType();
 
             if (receiverType.getKind() == TypeKind.ARRAY) {
@@ -543,23 +529,13 @@ public class FlowExpressionParseUtil {
         }
     }
 
-    private static boolean isArray(String s, FlowExpressionContext context) {
-        Matcher arraymatcher = arrayPattern.matcher(s);
-        return arraymatcher.matches();
-    }
-
-    private static Receiver parseArray(String s, FlowExpressionContext context, TreePath path)
+    private static Receiver parseArray(
+            ParsedExpression parsed, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Matcher arraymatcher = arrayPattern.matcher(s);
-        if (!arraymatcher.matches()) {
-            return null;
-        }
-
-        String receiverStr = arraymatcher.group(1);
-        String indexStr = arraymatcher.group(2);
-        Receiver receiver = parseHelper(receiverStr, context, path);
+        String s = parsed.text;
+        Receiver receiver = bind(parsed.parts.get(0), context, path);
         FlowExpressionContext contextForIndex = context.copyAndUseOuterReceiver();
-        Receiver index = parseHelper(indexStr, contextForIndex, path);
+        Receiver index = bind(parsed.parts.get(1), contextForIndex, path);
         TypeMirror receiverType = receiver.getType();
         if (!(receiverType instanceof ArrayType)) {
             throw constructParserException(
@@ -570,21 +546,12 @@ public class FlowExpressionParseUtil {
         return result;
     }
 
-    private static boolean isParentheses(String s, FlowExpressionContext contex) {
-        Matcher parenthesesMatcher = parenthesesPattern.matcher(s);
-        return parenthesesMatcher.matches();
-    }
-
-    private static Receiver parseParentheses(String s, FlowExpressionContext context, TreePath path)
+    private static Receiver parseParentheses(
+            ParsedExpression parsed, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Matcher parenthesesMatcher = parenthesesPattern.matcher(s);
-        if (!parenthesesMatcher.matches()) {
-            return null;
-        }
-        String expressionString = parenthesesMatcher.group(1);
         // Do not modify the value of recursiveCall, since a parenthesis match is essentially
         // a match to a no-op and should not semantically affect the parsing.
-        return parseHelper(expressionString, context, path);
+        return bind(parsed.parts.get(0), context, path);
     }
 
     /**
@@ -592,7 +559,7 @@ public class FlowExpressionParseUtil {
      * beginning of the string).
      *
      * @param expression the expression string that may start with a package and class name
-     * @param resolver the {@code Resolver} for the current processing environment
+     * @param resolution the name resolution state of the current compilation
      * @param path the tree path to the local scope
      * @return {@code null} if the expression string did not start with a package name; otherwise a
      *     {@code Pair} containing the {@code ClassName} for the matched class, and the remaining
@@ -602,10 +569,10 @@ public class FlowExpressionParseUtil {
      *     within the package (e.g., {@code "myExistingPackage.myNonExistentClass"}).
      */
     private static Pair<ClassName, String> matchPackageAndClassNameWithinExpression(
-            String expression, Resolver resolver, TreePath path)
+            String expression, Resolution resolution, TreePath path)
             throws FlowExpressionParseException {
         Pair<PackageSymbol, String> packageSymbolAndRemainingString =
-                matchPackageNameWithinExpression(expression, resolver, path);
+                matchPackageNameWithinExpression(expression, resolution, path);
 
         if (packageSymbolAndRemainingString == null) {
             return null;
@@ -626,7 +593,8 @@ public class FlowExpressionParseUtil {
         }
         ClassSymbol classSymbol;
         try {
-            classSymbol = resolver.findClassInPackage(classNameString, packageSymbol, path);
+            classSymbol =
+                    resolution.resolver.findClassInPackage(classNameString, packageSymbol, path);
         } catch (Throwable t) {
             throw constructParserException(
                     expression,
@@ -657,7 +625,7 @@ public class FlowExpressionParseUtil {
      * beginning of the string).
      *
      * @param expression the expression string that may start with a package name
-     * @param resolver the {@code Resolver} for the current processing environment
+     * @param resolution the name resolution state of the current compilation
      * @param path the tree path to the local scope
      * @return {@code null} if the expression string did not start with a package name; otherwise a
      *     {@code Pair} containing the {@code PackageSymbol} for the matched package, and the
@@ -665,7 +633,7 @@ public class FlowExpressionParseUtil {
      * @throws FlowExpressionParseException if the entire expression string matches a package name
      */
     private static Pair<PackageSymbol, String> matchPackageNameWithinExpression(
-            String expression, Resolver resolver, TreePath path)
+            String expression, Resolution resolution, TreePath path)
             throws FlowExpressionParseException {
         Matcher dotMatcher = memberselect.matcher(expression);
 
@@ -689,7 +657,7 @@ public class FlowExpressionParseUtil {
             // Try to set result to account for the extra component in packageName.
             PackageSymbol longerResult;
             try {
-                longerResult = resolver.findPackage(packageName, path);
+                longerResult = resolution.findPackage(packageName, path);
             } catch (Throwable t) {
                 throw constructParserException(
                         expression,
@@ -710,7 +678,7 @@ public class FlowExpressionParseUtil {
                 // Fail if the whole string represents a package, otherwise return.
                 PackageSymbol wholeExpressionAsPackage;
                 try {
-                    wholeExpressionAsPackage = resolver.findPackage(expression, path);
+                    wholeExpressionAsPackage = resolution.findPackage(expression, path);
                 } catch (Throwable t) {
                     throw constructParserException(
                             expression,
@@ -736,6 +704,200 @@ public class FlowExpressionParseUtil {
         return Pair.of(result, remainingString);
     }
 
+    /**
+     * The name resolution state that the flow expressions of one compilation share: a {@link
+     * Resolver}, and the packages that names were resolved to. A package name means the same
+     * package everywhere in a compilation, so each name is looked up at most once.
+     */
+    private static class Resolution {
+
+        /** The key of the resolution state, in the compilation's javac context. */
+        private static final Context.Key<Resolution> key = new Context.Key<>();
+
+        /** The resolver of the compilation. */
+        final Resolver resolver;
+
+        /** Maps each name that was looked up to its package, or to null if it is no package. */
+        private final Map<String, /*@Nullable*/ PackageSymbol> packages = new HashMap<>();
+
+        private Resolution(ProcessingEnvironment env) {
+            this.resolver = new Resolver(env);
+        }
+
+        /** Returns the resolution state of the compilation of {@code env}. */
+        static Resolution of(ProcessingEnvironment env) {
+            Context context = ((JavacProcessingEnvironment) env).getContext();
+            synchronized (context) {
+                Resolution resolution = context.get(key);
+                if (resolution == null) {
+                    resolution = new Resolution(env);
+                    context.put(key, resolution);
+                }
+                return resolution;
+            }
+        }
+
+        /**
+         * Returns the package {@code name}, or null if there is none.
+         *
+         * @see Resolver#findPackage(String, TreePath)
+         */
+        /*@Nullable*/ PackageSymbol findPackage(String name, TreePath path) {
+            synchronized (packages) {
+                if (packages.containsKey(name)) {
+                    return packages.get(name);
+                }
+            }
+            PackageSymbol result = resolver.findPackage(name, path);
+            synchronized (packages) {
+                packages.put(name, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The parse tree of an expression string: which kind of expression it is, and the parse trees
+     * of its subexpressions. It does not depend on the context in which the string is parsed, so
+     * it is cached and then resolved in each context by {@link
+     * FlowExpressionParseUtil#bind}.
+     */
+    private static class ParsedExpression {
+
+        /** The kinds of expressions, in the order in which {@link #parse} tries them. */
+        enum Kind {
+            NULL_LITERAL,
+            INT_LITERAL,
+            LONG_LITERAL,
+            STRING_LITERAL,
+            THIS,
+            SUPER,
+            IDENTIFIER,
+            /** {@link #name} is the parameter index. */
+            PARAMETER,
+            /** {@link #parts} are the array and the index. */
+            ARRAY,
+            /**
+             * {@link #name} is the method name, and {@link #parts} are the arguments. If the
+             * argument list is malformed, its last part is an {@link #ERROR}.
+             */
+            METHOD,
+            /** {@link #parts} are the object and the member. */
+            MEMBER_SELECT,
+            /** {@link #parts} is the expression within the parentheses. */
+            PARENTHESES,
+            /** The string is not an expression, and {@link #name} is the error message. */
+            ERROR
+        }
+
+        /** The kind of the expression. */
+        final Kind kind;
+
+        /** The expression string, without surrounding whitespace. */
+        final String text;
+
+        /** The parameter index, method name or error message, depending on the kind. */
+        final /*@Nullable*/ String name;
+
+        /** The subexpressions, depending on the kind. */
+        final List<ParsedExpression> parts;
+
+        /**
+         * Whether the object of a member select is an identifier, so that the member select may
+         * start with a package name.
+         */
+        final boolean mayStartWithPackage;
+
+        private ParsedExpression(
+                Kind kind,
+                String text,
+                /*@Nullable*/ String name,
+                List<ParsedExpression> parts,
+                boolean mayStartWithPackage) {
+            this.kind = kind;
+            this.text = text;
+            this.name = name;
+            this.parts = parts;
+            this.mayStartWithPackage = mayStartWithPackage;
+        }
+
+        private ParsedExpression(Kind kind, String text, ParsedExpression... parts) {
+            this(kind, text, null, Arrays.asList(parts), false);
+        }
+
+        /** Returns an expression that could not be parsed because of {@code message}. */
+        static ParsedExpression error(String text, String message) {
+            return new ParsedExpression(
+                    Kind.ERROR, text, message, Collections.<ParsedExpression>emptyList(), false);
+        }
+
+        /**
+         * Determines the parse tree of the expression string {@code s}.
+         *
+         * @param s the expression string, without surrounding whitespace
+         * @param parsingMember whether {@code s} is the member part of a member select, which
+         *     cannot be a literal, {@code this}, {@code super}, or a parameter
+         */
+        static ParsedExpression parse(String s, boolean parsingMember) {
+            // TODO: treating "this" as an identifier when parsing a member is probably wrong
+            // because you could have an inner class receiver Outer.this
+            if (!parsingMember) {
+                if (nullPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.NULL_LITERAL, s);
+                } else if (intPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.INT_LITERAL, s);
+                } else if (longPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.LONG_LITERAL, s);
+                } else if (stringPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.STRING_LITERAL, s);
+                } else if (thisPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.THIS, s);
+                } else if (superPattern.matcher(s).matches()) {
+                    return new ParsedExpression(Kind.SUPER, s);
+                }
+            }
+            if (identifierPattern.matcher(s).matches()) {
+                return new ParsedExpression(Kind.IDENTIFIER, s);
+            }
+            Matcher matcher;
+            if (!parsingMember && (matcher = parameterPattern.matcher(s)).matches()) {
+                return new ParsedExpression(
+                        Kind.PARAMETER,
+                        s,
+                        matcher.group(1),
+                        Collections.<ParsedExpression>emptyList(),
+                        false);
+            } else if ((matcher = arrayPattern.matcher(s)).matches()) {
+                return new ParsedExpression(
+                        Kind.ARRAY,
+                        s,
+                        getParsedExpression(matcher.group(1), parsingMember),
+                        getParsedExpression(matcher.group(2), false));
+            } else if ((matcher = methodPattern.matcher(s)).matches()) {
+                List<ParsedExpression> arguments = new ArrayList<>();
+                ParameterListParser.parseParameterList(matcher.group(2), true, arguments);
+                return new ParsedExpression(Kind.METHOD, s, matcher.group(1), arguments, false);
+            } else if ((matcher = memberselect.matcher(s)).matches()) {
+                ParsedExpression object = getParsedExpression(matcher.group(1), parsingMember);
+                // A package name is an identifier, but not this or super.
+                boolean mayStartWithPackage =
+                        object.kind == Kind.IDENTIFIER
+                                && !thisPattern.matcher(object.text).matches()
+                                && !superPattern.matcher(object.text).matches();
+                return new ParsedExpression(
+                        Kind.MEMBER_SELECT,
+                        s,
+                        null,
+                        Arrays.asList(object, getParsedExpression(matcher.group(2), true)),
+                        mayStartWithPackage);
+            } else if ((matcher = parenthesesPattern.matcher(s)).matches()) {
+                return new ParsedExpression(
+                        Kind.PARENTHESES, s, getParsedExpression(matcher.group(1), parsingMember));
+            }
+            return error(s, "could not parse string");
+        }
+    }
+
     /**
      * A very simple parser for parameter lists, i.e. strings of the form {@code a, b, c} for some
      * expressions {@code a}, {@code b} and {@code c}.
@@ -745,16 +907,11 @@ public class FlowExpressionParseUtil {
     private static class ParameterListParser {
 
         /**
-         * Parse a parameter list and return the parameters as a list (or throw a {@link
-         * FlowExpressionParseException}).
+         * Parse a parameter list and add the parse trees of the parameters to {@code result}. If
+         * the parameter list is malformed, the last parse tree added is an error.
          */
-        private static List<Receiver> parseParameterList(
-                String parameterString,
-                boolean allowEmptyList,
-                FlowExpressionContext context,
-                TreePath path)
-                throws FlowExpressionParseException {
-            ArrayList<Receiver> result = new ArrayList<>();
+        private static void parseParameterList(
+                String parameterString, boolean allowEmptyList, List<ParsedExpression> result) {
             // the index of the character in 'parameterString' that the parser
             // is currently looking at
             int idx = 0;
@@ -770,15 +927,16 @@ public class FlowExpressionParseUtil {
                 if (idx == parameterString.length()) {
                     // finish current param
                     if (inString) {
-                        throw constructParserException(parameterString, "unterminated string");
+                        result.add(ParsedExpression.error(parameterString, "unterminated string"));
                     } else if (callLevel > 0) {
-                        throw constructParserException(
-                                parameterString,
-                                "unterminated method invocation, callLevel==" + callLevel);
+                        result.add(
+                                ParsedExpression.error(
+                                        parameterString,
+                                        "unterminated method invocation, callLevel==" + callLevel));
                     } else {
-                        finishParam(parameterString, allowEmptyList, context, path, result, idx);
-                        return result;
+                        finishParam(parameterString, allowEmptyList, result, idx);
                     }
+                    return;
                 }
 
                 // get next character
@@ -793,22 +951,12 @@ public class FlowExpressionParseUtil {
                         } else {
                             if (callLevel == 0) {
                                 // parse first parameter
-                                finishParam(
-                                        parameterString,
-                                        allowEmptyList,
-                                        context,
-                                        path,
-                                        result,
-                                        idx - 1);
-                                // parse remaining parameters
-                                List<Receiver> rest =
-                                        parseParameterList(
-                                                parameterString.substring(idx),
-                                                false,
-                                                context,
-                                                path);
-                                result.addAll(rest);
-                                return result;
+                                if (finishParam(parameterString, allowEmptyList, result, idx - 1)) {
+                                    // parse remaining parameters
+                                    parseParameterList(
+                                            parameterString.substring(idx), false, result);
+                                }
+                                return;
                             } else {
                                 // not the outermost method call, defer parsing of
                                 // this parameter list to recursive call.
@@ -831,7 +979,8 @@ public class FlowExpressionParseUtil {
                             // stay in same state and consume the character
                         } else {
                             if (callLevel == 0) {
-                                throw constructParserException(parameterString, "callLevel==0");
+                                result.add(ParsedExpression.error(parameterString, "callLevel==0"));
+                                return;
                             } else {
                                 callLevel--;
                             }
@@ -844,22 +993,24 @@ public class FlowExpressionParseUtil {
             }
         }
 
-        private static void finishParam(
+        /** Returns false if the parameter list is malformed. */
+        private static boolean finishParam(
                 String parameterString,
                 boolean allowEmptyList,
-                FlowExpressionContext context,
-                TreePath path,
-                ArrayList<Receiver> result,
-                int idx)
-                throws FlowExpressionParseException {
+                List<ParsedExpression> result,
+                int idx) {
             if (idx == 0) {
                 if (allowEmptyList) {
-                    return;
+                    return true;
                 } else {
-                    throw constructParserException(parameterString, "empty parameter list; idx==0");
+                    result.add(
+                            ParsedExpression.error(
+                                    parameterString, "empty parameter list; idx==0"));
+                    return false;
                 }
             } else {
-                result.add(parseHelper(parameterString.substring(0, idx), context, path));
+                result.add(getParsedExpression(parameterString.substring(0, idx), false));
+                return true;
             }
         }
     }
@@ -8,6 +8,7 @@ import org.checkerframework.checker.nullness.qual.PolyNull;
 */
 
 import java.lang.annotation.Annotation;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -16,6 +17,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.ElementFilter;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
@@ -176,6 +179,28 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** All qualifiers, including polymorphic qualifiers. */
     private final Set<AnnotationMirror> typeQualifiers;
 
+    /**
+     * Maps the name of each qualifier whose annotation type declares no elements to a small
+     * ordinal. Such a qualifier is fully identified by its name, so subtyping between two of them
+     * is looked up in {@link #subtypeTable} and their lub and glb are memoized by ordinal.
+     */
+    private final Map<String, Integer> qualifierOrdinals;
+
+    /** Row i has bit j set iff the qualifier with ordinal i is a subtype of that with ordinal j. */
+    private final BitSet[] subtypeTable;
+
+    /** The memoized lubs of pairs of qualifiers with ordinals i and j, at index i * n + j. */
+    private final AnnotationMirror[] lubTable;
+
+    /** The indices of {@link #lubTable} that have been computed; a lub may be null. */
+    private final BitSet lubComputed;
+
+    /** The memoized glbs of pairs of qualifiers with ordinals i and j, at index i * n + j. */
+    private final AnnotationMirror[] glbTable;
+
+    /** The indices of {@link #glbTable} that have been computed. */
+    private final BitSet glbComputed;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -211,9 +236,72 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         Set<AnnotationMirror> typeQualifiers = AnnotationUtils.createAnnotationSet();
         typeQualifiers.addAll(supertypesMap.keySet());
         this.typeQualifiers = Collections.unmodifiableSet(typeQualifiers);
+
+        this.qualifierOrdinals = new HashMap<>();
+        for (AnnotationMirror qual : typeQualifiers) {
+            if (declaresNoElements(qual)) {
+                qualifierOrdinals.put(
+                        AnnotationUtils.annotationName(qual), qualifierOrdinals.size());
+            }
+        }
+        int n = qualifierOrdinals.size();
+        this.subtypeTable = new BitSet[n];
+        for (AnnotationMirror qual : typeQualifiers) {
+            int sub = getOrdinal(qual);
+            if (sub < 0) {
+                continue;
+            }
+            BitSet row = new BitSet(n);
+            row.set(sub);
+            for (AnnotationMirror sup : supertypesMap.get(qual)) {
+                int ordinal = getOrdinal(sup);
+                if (ordinal >= 0) {
+                    row.set(ordinal);
+                }
+            }
+            subtypeTable[sub] = row;
+        }
+        this.lubTable = new AnnotationMirror[n * n];
+        this.lubComputed = new BitSet(n * n);
+        this.glbTable = new AnnotationMirror[n * n];
+        this.glbComputed = new BitSet(n * n);
         // System.out.println("MGH: " + this);
     }
 
+    /** Returns true if the annotation type of {@code anno} declares no elements. */
+    private static boolean declaresNoElements(AnnotationMirror anno) {
+        Element annoElt = anno.getAnnotationType().asElement();
+        return ElementFilter.methodsIn(annoElt.getEnclosedElements()).isEmpty();
+    }
+
+    /**
+     * Returns the ordinal of {@code anno} in {@link #qualifierOrdinals}, or -1 if {@code anno} is
+     * null or is not a qualifier without elements.
+     */
+    private int getOrdinal(AnnotationMirror anno) {
+        if (anno == null) {
+            return -1;
+        }
+        Integer ordinal = qualifierOrdinals.get(AnnotationUtils.annotationName(anno));
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the index of the pair {@code (a1, a2)} in {@link #lubTable} and {@link #glbTable},
+     * or -1 if either qualifier has no ordinal.
+     */
+    private int getPairIndex(AnnotationMirror a1, AnnotationMirror a2) {
+        int o1 = getOrdinal(a1);
+        if (o1 < 0) {
+            return -1;
+        }
+        int o2 = getOrdinal(a2);
+        if (o2 < 0) {
+            return -1;
+        }
+        return o1 * subtypeTable.length + o2;
+    }
+
     /**
      * Method to finalize the qualifier hierarchy before it becomes unmodifiable. The parameters
      * pass all fields and allow modification.
@@ -399,6 +487,19 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int index = getPairIndex(a1, a2);
+        if (index < 0) {
+            return computeLub(a1, a2);
+        }
+        if (!lubComputed.get(index)) {
+            lubTable[index] = computeLub(a1, a2);
+            lubComputed.set(index);
+        }
+        return lubTable[index];
+    }
+
+    /** Computes the lub of {@code a1} and {@code a2} without consulting {@link #lubTable}. */
+    private AnnotationMirror computeLub(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -429,6 +530,19 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int index = getPairIndex(a1, a2);
+        if (index < 0) {
+            return computeGlb(a1, a2);
+        }
+        if (!glbComputed.get(index)) {
+            glbTable[index] = computeGlb(a1, a2);
+            glbComputed.set(index);
+        }
+        return glbTable[index];
+    }
+
+    /** Computes the glb of {@code a1} and {@code a2} without consulting {@link #glbTable}. */
+    private AnnotationMirror computeGlb(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -462,11 +576,21 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      * <p>When client specifies an annotation, a1, to be a subtype of annotation with values, a2,
      * then a1 is a subtype of all instances of a2 regardless of a2 values.
      *
+     * <p>Qualifiers without elements are compared by looking up their ordinals in a precomputed
+     * subtype table.
+     *
      * @param subAnno the sub qualifier
      * @param superAnno the super qualifier
      */
     @Override
     public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        int subOrdinal = getOrdinal(subAnno);
+        if (subOrdinal >= 0) {
+            int superOrdinal = getOrdinal(superAnno);
+            if (superOrdinal >= 0) {
+                return subtypeTable[subOrdinal].get(superOrdinal);
+            }
+        }
         checkAnnoInGraph(subAnno);
         checkAnnoInGraph(superAnno);
 
@@ -24,6 +24,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedPrimitiveType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.EqualityAtmComparer;
 import org.checkerframework.framework.type.GeneralAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
@@ -49,6 +50,7 @@ import org.checkerframework.framework.util.typeinference.solver.InferredValue;
 import org.checkerframework.framework.util.typeinference.solver.InferredValue.InferredType;
 import org.checkerframework.framework.util.typeinference.solver.SubtypesSolver;
 import org.checkerframework.framework.util.typeinference.solver.SupertypesSolver;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
@@ -99,9 +101,55 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
 
     private final boolean showInferenceSteps;
 
+    /** The number of invocations whose type arguments are cached by each instance. */
+    private static final int CACHE_SIZE = 300;
+
+    /**
+     * The inputs and results of recent inferences, keyed by the invocation. The visitor and the
+     * flow analysis request the type arguments of an invocation several times; a cached result is
+     * reused if the argument types, the assignment context and the method type are the same.
+     */
+    private final Map<ExpressionTree, CachedInference> inferenceCache =
+            CollectionUtils.createLRUCache(CACHE_SIZE);
+
+    /** Compares the inputs of an inference with the inputs of a cached inference. */
+    private final EqualityAtmComparer inputComparer;
+
+    /** The number of invocations whose type arguments were requested. */
+    private long inferences = 0;
+
+    /** The number of invocations whose type arguments were found in a cache. */
+    private long cacheHits = 0;
+
+    /** The number of AFConstraints created from the arguments of invocations. */
+    private long afConstraints = 0;
+
+    /** The number of TUConstraints passed to the solvers. */
+    private long tuConstraints = 0;
+
+    /** The time spent inferring type arguments that were not cached, in nanoseconds. */
+    private long inferenceNanos = 0;
+
     public DefaultTypeArgumentInference(AnnotatedTypeFactory typeFactory) {
         this.showInferenceSteps =
                 typeFactory.getContext().getChecker().hasOption("showInferenceSteps");
+        final Types types = typeFactory.getProcessingEnv().getTypeUtils();
+        this.inputComparer =
+                new EqualityAtmComparer() {
+                    // Method types that are viewpoint-adapted to the same receiver are equal, but
+                    // their underlying types are not the same object.
+                    @Override
+                    protected boolean compare(
+                            AnnotatedTypeMirror type1, AnnotatedTypeMirror type2) {
+                        if (type1 == null || type2 == null) {
+                            return type1 == type2;
+                        }
+                        return type1.getKind() == type2.getKind()
+                                && types.isSameType(
+                                        type1.getUnderlyingType(), type2.getUnderlyingType())
+                                && arePrimeAnnosEqual(type1, type2);
+                    }
+                };
     }
 
     @Override
@@ -123,6 +171,38 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
         final AnnotatedTypeMirror assignedTo =
                 TypeArgInferenceUtil.assignedTo(typeFactory, typeFactory.getPath(expressionTree));
 
+        inferences++;
+        if (showInferenceSteps) {
+            // Show the steps of every inference.
+            return inferTypeArgs(
+                    typeFactory, expressionTree, methodElem, methodType, argTypes, assignedTo);
+        }
+        CachedInference cached = inferenceCache.get(expressionTree);
+        if (cached != null && cached.hasInputs(methodType, argTypes, assignedTo)) {
+            cacheHits++;
+            return copyOf(cached.result);
+        }
+
+        // Inference may modify its inputs, so copy them before.
+        CachedInference inputs = new CachedInference(methodType, argTypes, assignedTo);
+        long start = System.nanoTime();
+        Map<TypeVariable, AnnotatedTypeMirror> result =
+                inferTypeArgs(
+                        typeFactory, expressionTree, methodElem, methodType, argTypes, assignedTo);
+        inferenceNanos += System.nanoTime() - start;
+        inputs.result = copyOf(result);
+        inferenceCache.put(expressionTree, inputs);
+        return result;
+    }
+
+    /** Infers the type arguments of an invocation whose argument types and context are given. */
+    private Map<TypeVariable, AnnotatedTypeMirror> inferTypeArgs(
+            AnnotatedTypeFactory typeFactory,
+            ExpressionTree expressionTree,
+            ExecutableElement methodElem,
+            AnnotatedExecutableType methodType,
+            List<AnnotatedTypeMirror> argTypes,
+            AnnotatedTypeMirror assignedTo) {
         SourceChecker checker = typeFactory.getContext().getChecker();
 
         if (showInferenceSteps) {
@@ -158,6 +238,78 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
         return inferredArgs;
     }
 
+    /** Returns a copy of {@code inferredArgs} whose types are deep copies. */
+    private static Map<TypeVariable, AnnotatedTypeMirror> copyOf(
+            Map<TypeVariable, AnnotatedTypeMirror> inferredArgs) {
+        Map<TypeVariable, AnnotatedTypeMirror> copy = new HashMap<>(inferredArgs.size());
+        for (Map.Entry<TypeVariable, AnnotatedTypeMirror> entry : inferredArgs.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().deepCopy());
+        }
+        return copy;
+    }
+
+    /**
+     * @return a one-line summary of the inferences of this instance, their constraints and the
+     *     time they took
+     */
+    public String getStatistics() {
+        return "typeArgumentInference: inferences "
+                + inferences
+                + ", cache hits "
+                + cacheHits
+                + ", AF constraints "
+                + afConstraints
+                + ", TU constraints "
+                + tuConstraints
+                + ", time "
+                + (inferenceNanos / 1000000)
+                + " ms";
+    }
+
+    /** The inputs of an inference, and its result once it is known. */
+    private class CachedInference {
+        /** A copy of the type of the invoked method. */
+        final AnnotatedExecutableType methodType;
+
+        /** Copies of the types of the arguments of the invocation. */
+        final List<AnnotatedTypeMirror> argTypes;
+
+        /** A copy of the type to which the invocation is assigned, or null. */
+        final AnnotatedTypeMirror assignedTo;
+
+        /** The inferred type arguments. */
+        Map<TypeVariable, AnnotatedTypeMirror> result;
+
+        CachedInference(
+                AnnotatedExecutableType methodType,
+                List<AnnotatedTypeMirror> argTypes,
+                AnnotatedTypeMirror assignedTo) {
+            this.methodType = methodType.deepCopy();
+            this.argTypes = new ArrayList<>(argTypes.size());
+            for (AnnotatedTypeMirror argType : argTypes) {
+                this.argTypes.add(argType.deepCopy());
+            }
+            this.assignedTo = assignedTo == null ? null : assignedTo.deepCopy();
+        }
+
+        /** Returns true if an inference with the given inputs has the same inputs as this one. */
+        boolean hasInputs(
+                AnnotatedExecutableType methodType,
+                List<AnnotatedTypeMirror> argTypes,
+                AnnotatedTypeMirror assignedTo) {
+            if (argTypes.size() != this.argTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < argTypes.size(); i++) {
+                if (!inputComparer.visit(this.argTypes.get(i), argTypes.get(i), null)) {
+                    return false;
+                }
+            }
+            return inputComparer.visit(this.assignedTo, assignedTo, null)
+                    && inputComparer.visit(this.methodType, methodType, null);
+        }
+    }
+
     /**
      * If one of the inferredArgs are NullType, then re-run inference ignoring null method
      * arguments. Then lub the result of the second inference with the NullType and put the new
@@ -306,6 +458,7 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
         Set<AFConstraint> afArgumentConstraints =
                 createArgumentAFConstraints(
                         typeFactory, argumentTypes, methodType, targets, useNullArguments);
+        afConstraints += afArgumentConstraints.size();
 
         //2. Step 2 - Solve the constraints.
         Pair<InferenceResult, InferenceResult> argInference =
@@ -780,6 +933,7 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
             outgoing.add(afConstraint.toTUConstraint());
         }
 
+        tuConstraints += outgoing.size();
         return outgoing;
     }
 
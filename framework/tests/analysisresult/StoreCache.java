@@ -0,0 +1,18 @@
+class StoreCache {
+    int test(boolean b) {
+        int a = 1;
+        int c = 2;
+        if (b) {
+            a = 3;
+            c = a;
+        } else {
+            c = 4;
+        }
+        int d = a;
+        while (d == 3) {
+            d = c;
+            a = d;
+        }
+        return a + c + d;
+    }
+}
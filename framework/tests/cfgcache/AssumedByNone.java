@@ -0,0 +1,10 @@
+class AssumedByNone {
+    int choose(boolean b) {
+        int i = b ? 1 : 2;
+        return i;
+    }
+
+    void check(boolean b) {
+        assert b : "@AssumeAssertion(unrelated)";
+    }
+}
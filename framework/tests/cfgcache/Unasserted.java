@@ -0,0 +1,8 @@
+class Unasserted {
+    int choose(boolean b) {
+        int i = b ? 1 : 2;
+        return i;
+    }
+
+    void check(boolean b) {}
+}
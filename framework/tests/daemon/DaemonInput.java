@@ -0,0 +1,10 @@
+import testlib.util.*;
+
+class DaemonInput {
+
+    @Odd String field;
+
+    void test(String param) {
+        field = param;
+    }
+}
@@ -0,0 +1,208 @@
+package tests;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.TreePathScanner;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.analysis.AnalysisResult;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.checkerframework.javacutil.BasicTypeProcessor;
+import org.checkerframework.javacutil.TreeUtils;
+import org.junit.Test;
+
+/**
+ * Tests that the store cache of an {@link AnalysisResult} returns the same stores as a new analysis
+ * without a cache, even when the cache is too small for all blocks of a method.
+ *
+ * <p>{@link StoreCacheProcessor} runs constant propagation over each method of the test input
+ * tests/analysisresult/StoreCache.java, and requests the stores before and after every node twice.
+ */
+public class AnalysisResultTest {
+
+    @Test
+    public void testStoreCacheWithEviction() {
+        // Smaller than some blocks of the test input, so that every new block evicts others.
+        checkStoreCache(4);
+        assert StoreCacheProcessor.mismatches.isEmpty() : StoreCacheProcessor.mismatches;
+        assert StoreCacheProcessor.hits > 0;
+        assert StoreCacheProcessor.evictions > 0;
+        // Evicted blocks are computed again when their stores are requested the second time.
+        assert StoreCacheProcessor.misses > StoreCacheProcessor.blocks;
+        assert StoreCacheProcessor.hits + StoreCacheProcessor.misses
+                == StoreCacheProcessor.requests;
+    }
+
+    @Test
+    public void testStoreCacheWithoutEviction() {
+        checkStoreCache(1000);
+        assert StoreCacheProcessor.mismatches.isEmpty() : StoreCacheProcessor.mismatches;
+        assert StoreCacheProcessor.evictions == 0;
+        assert StoreCacheProcessor.misses == StoreCacheProcessor.blocks;
+        assert StoreCacheProcessor.hits + StoreCacheProcessor.misses
+                == StoreCacheProcessor.requests;
+    }
+
+    /** Runs {@link StoreCacheProcessor} with a cache of {@code cacheSize} nodes. */
+    private static void checkStoreCache(int cacheSize) {
+        StoreCacheProcessor.reset(cacheSize);
+        File file = new File("tests" + File.separator + "analysisresult", "StoreCache.java");
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        "tests" + File.separator + "analysisresult",
+                        Collections.singletonList(file),
+                        Collections.singletonList(StoreCacheProcessor.class.getName()),
+                        Collections.<String>emptyList(),
+                        false);
+        new TypecheckExecutor().compile(config);
+        // The constructor and the method of the test input.
+        assert StoreCacheProcessor.methods == 2 : StoreCacheProcessor.methods;
+    }
+
+    /**
+     * Compares the stores of an {@link AnalysisResult} with a store cache to stores rebuilt from
+     * scratch, for every method. The processor is instantiated by javac, so it reports its results
+     * in static fields.
+     */
+    @SupportedAnnotationTypes("*")
+    public static class StoreCacheProcessor extends BasicTypeProcessor {
+
+        /** The maximum number of nodes in the store cache. */
+        static int cacheSize;
+
+        /** The number of methods whose stores were compared. */
+        static int methods;
+
+        /** The number of reachable blocks that contain nodes. */
+        static int blocks;
+
+        /** The number of stores requested from the cached results. */
+        static int requests;
+
+        /** The store cache hits, summed over all methods. */
+        static int hits;
+
+        /** The store cache misses, summed over all methods. */
+        static int misses;
+
+        /** The store cache evictions, summed over all methods. */
+        static int evictions;
+
+        /** The stores of the cached results that differ from the uncached results. */
+        static List<String> mismatches = new ArrayList<>();
+
+        static void reset(int size) {
+            cacheSize = size;
+            methods = 0;
+            blocks = 0;
+            requests = 0;
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+            mismatches = new ArrayList<>();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        protected TreePathScanner<?, ?> createTreePathScanner(final CompilationUnitTree root) {
+            return new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitMethod(MethodTree tree, Void p) {
+                    ClassTree classTree = TreeUtils.enclosingClass(getCurrentPath());
+                    compareStores(CFGBuilder.build(root, processingEnv, tree, classTree));
+                    return null;
+                }
+            };
+        }
+
+        private void compareStores(ControlFlowGraph cfg) {
+            AnalysisResult<Constant, ConstantPropagationStore> cached = analyze(cfg);
+            cached.enableStoreCache(cacheSize);
+
+            for (int pass = 0; pass < 2; pass++) {
+                for (Block block : cfg.getDepthFirstOrderedBlocks()) {
+                    List<Node> nodes = nodes(block);
+                    if (nodes.isEmpty() || analyze(cfg).getStoreBefore(nodes.get(0)) == null) {
+                        // The block holds no nodes or is unreachable.
+                        continue;
+                    }
+                    if (pass == 0) {
+                        blocks++;
+                    }
+                    for (Node node : nodes) {
+                        compare(
+                                node,
+                                "before",
+                                analyze(cfg).getStoreBefore(node),
+                                cached.getStoreBefore(node));
+                        compare(
+                                node,
+                                "after",
+                                analyze(cfg).getStoreAfter(node),
+                                cached.getStoreAfter(node));
+                        requests += 2;
+                    }
+                }
+            }
+            hits += cached.getStoreCacheHits();
+            misses += cached.getStoreCacheMisses();
+            evictions += cached.getStoreCacheEvictions();
+            methods++;
+        }
+
+        /**
+         * Runs constant propagation over {@code cfg}. The transfer function modifies the stores
+         * that it is given, so every store rebuilt from scratch uses a new analysis.
+         */
+        private AnalysisResult<Constant, ConstantPropagationStore> analyze(ControlFlowGraph cfg) {
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                    new Analysis<>(processingEnv, new ConstantPropagationTransfer());
+            analysis.performAnalysis(cfg);
+            return analysis.getResult();
+        }
+
+        private static void compare(
+                Node node,
+                String where,
+                ConstantPropagationStore expected,
+                ConstantPropagationStore actual) {
+            if (!Objects.equals(expected, actual)) {
+                mismatches.add(where + " " + node + ": " + actual + " instead of " + expected);
+            }
+        }
+
+        /** Returns the nodes of {@code block}. */
+        private static List<Node> nodes(Block block) {
+            switch (block.getType()) {
+                case REGULAR_BLOCK:
+                    return ((RegularBlock) block).getContents();
+                case EXCEPTION_BLOCK:
+                    return Collections.singletonList(((ExceptionBlock) block).getNode());
+                default:
+                    return Collections.emptyList();
+            }
+        }
+    }
+}
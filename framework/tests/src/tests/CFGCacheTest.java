@@ -0,0 +1,56 @@
+package tests;
+
+import java.io.File;
+import java.util.Collections;
+import org.checkerframework.framework.flow.CFGCache;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Test;
+import testlib.aggregate.TestAggregateChecker;
+
+/**
+ * Tests that the checkers of an aggregate checker share control-flow graphs through the {@link
+ * CFGCache}, unless an {@code @AssumeAssertion} string makes the graphs differ.
+ *
+ * <p>The test inputs in tests/cfgcache have the same methods, except for an {@code assert}
+ * statement in one method.
+ */
+public class CFGCacheTest {
+
+    /** The number of hits and misses of the cache while compiling {@code fileName}. */
+    private static int[] hitsAndMisses(String fileName) {
+        File file = new File("tests" + File.separator + "cfgcache", fileName);
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        "tests" + File.separator + "cfgcache",
+                        Collections.singletonList(file),
+                        Collections.singletonList(TestAggregateChecker.class.getName()),
+                        Collections.singletonList("-Anomsgtext"),
+                        false);
+        int hits = CFGCache.getHits();
+        int misses = CFGCache.getMisses();
+        new TypecheckExecutor().compile(config);
+        return new int[] {CFGCache.getHits() - hits, CFGCache.getMisses() - misses};
+    }
+
+    @Test
+    public void testReuse() {
+        int[] unasserted = hitsAndMisses("Unasserted.java");
+        // The second checker finds every graph that the first checker built.
+        assert unasserted[0] > 0 && unasserted[0] == unasserted[1];
+
+        // An @AssumeAssertion string for neither checker does not prevent reuse.
+        int[] assumedByNone = hitsAndMisses("AssumedByNone.java");
+        assert assumedByNone[0] == unasserted[0] && assumedByNone[1] == unasserted[1];
+    }
+
+    @Test
+    public void testNoReuseForDifferentAssumptions() {
+        int[] unasserted = hitsAndMisses("Unasserted.java");
+        // Only the Value Checker assumes the assertion, so the Aliasing Checker builds its own
+        // graph of the method with the assertion.
+        int[] assumedByValue = hitsAndMisses("AssumedByValue.java");
+        assert assumedByValue[0] == unasserted[0] - 1 && assumedByValue[1] == unasserted[1] + 1;
+    }
+}
@@ -0,0 +1,183 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.framework.test.TestUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Tests that the {@code -AincrementalCache} option replays the stored results of a class whose
+ * fingerprint did not change, and checks the class again if its source, the signature of a class
+ * it depends on, or a {@code package-info.java} file of their packages changed.
+ *
+ * <p>To tell replayed results from new ones, the tests replace the stored messages by {@link
+ * #REPLAYED}.
+ */
+public class CheckResultStoreTest {
+
+    /** The message that replaces the stored messages. */
+    private static final String REPLAYED = "replayed";
+
+    /** The error that the checked class has, unless a dependency makes its field {@code @Odd}. */
+    private static final String ERROR = "assignment.type.incompatible";
+
+    /** The directory that holds the sources, the class files and the cache of a test. */
+    private File testDir;
+
+    @Before
+    public void setUp() throws IOException {
+        testDir = Files.createTempDirectory("incrementalCache").toFile();
+        write(
+                "a/Checked.java",
+                "package a;",
+                "import testlib.util.Odd;",
+                "public class Checked {",
+                "    void test(b.Dependency dependency) {",
+                "        @Odd String s = dependency.value;",
+                "    }",
+                "}");
+        writeDependency("public String value;", "return 1;");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        List<File> files = walk(testDir);
+        Collections.reverse(files);
+        for (File file : files) {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        String output = compile();
+        assert output.contains(ERROR) && !output.contains(REPLAYED) : output;
+
+        markStoredResults();
+        output = compile();
+        assert output.contains(REPLAYED) && !output.contains(ERROR) : output;
+
+        // A change to a method body of a dependency does not change its signature.
+        writeDependency("public String value;", "return 2;");
+        output = compile();
+        assert output.contains(REPLAYED) && !output.contains(ERROR) : output;
+
+        writeDependency("public @Odd String value;", "return 2;");
+        output = compile();
+        assert !output.contains(REPLAYED) && !output.contains(ERROR) : output;
+    }
+
+    @Test
+    public void testMissForChangedSource() throws IOException {
+        compile();
+        markStoredResults();
+        write(
+                "a/Checked.java",
+                "package a;",
+                "import testlib.util.Odd;",
+                "public class Checked {",
+                "    void test(b.Dependency dependency) {",
+                "        @Odd String t = dependency.value;",
+                "    }",
+                "}");
+        String output = compile();
+        assert output.contains(ERROR) && !output.contains(REPLAYED) : output;
+    }
+
+    @Test
+    public void testMissForPackageInfoOfDependency() throws IOException {
+        compile();
+        markStoredResults();
+        // The field of the dependency becomes @Odd by default.
+        write(
+                "b/package-info.java",
+                "@DefaultQualifier(Odd.class)",
+                "package b;",
+                "import org.checkerframework.framework.qual.DefaultQualifier;",
+                "import testlib.util.Odd;");
+        String output = compile();
+        assert !output.contains(REPLAYED) && !output.contains(ERROR) : output;
+    }
+
+    @Test
+    public void testMissForPackageInfoOfCheckedClass() throws IOException {
+        compile();
+        markStoredResults();
+        write("a/package-info.java", "@Deprecated", "package a;");
+        String output = compile();
+        assert output.contains(ERROR) && !output.contains(REPLAYED) : output;
+    }
+
+    /** Writes the dependency of the checked class, with the given field and method body. */
+    private void writeDependency(String field, String body) throws IOException {
+        write(
+                "b/Dependency.java",
+                "package b;",
+                "import testlib.util.Odd;",
+                "public class Dependency {",
+                "    " + field,
+                "    int method() {",
+                "        " + body,
+                "    }",
+                "}");
+    }
+
+    /** Writes the source file {@code path} in the test directory. */
+    private void write(String path, String... lines) throws IOException {
+        File file = new File(new File(testDir, "src"), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    /** Compiles all source files with the cache, and returns the diagnostics. */
+    private String compile() {
+        List<File> sources = new ArrayList<>();
+        for (File file : walk(new File(testDir, "src"))) {
+            if (file.getName().endsWith(".java")) {
+                sources.add(file);
+            }
+        }
+        List<String> options =
+                TestUtilities.getCompilerOptions(
+                        new File(testDir, "classes"),
+                        "-processor",
+                        FlowTestChecker.class.getName(),
+                        "-AincrementalCache=" + new File(testDir, "cache").getPath());
+        return TestUtilities.compile(sources, options, null);
+    }
+
+    /** Returns {@code dir} and all files and directories in it, parents before children. */
+    private static List<File> walk(File dir) {
+        List<File> result = new ArrayList<>();
+        result.add(dir);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                result.addAll(walk(file));
+            }
+        }
+        return result;
+    }
+
+    /** Replaces the message of every stored diagnostic by {@link #REPLAYED}. */
+    private void markStoredResults() throws IOException {
+        File storeDir = new File(new File(testDir, "cache"), FlowTestChecker.class.getName());
+        File stored = new File(storeDir, "a.Checked.txt");
+        List<String> lines = Files.readAllLines(stored.toPath(), StandardCharsets.UTF_8);
+        assert lines.size() > 1 : lines;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            lines.set(i, line.substring(0, line.lastIndexOf('\t') + 1) + REPLAYED);
+        }
+        Files.write(stored.toPath(), lines, StandardCharsets.UTF_8);
+    }
+}
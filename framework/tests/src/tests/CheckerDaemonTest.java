@@ -0,0 +1,85 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.util.CheckerDaemon;
+import org.junit.Test;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Tests that compilations run by a {@link CheckerDaemon} report the same diagnostics, including
+ * stub file warnings, as a fresh javac run, also when the daemon has run another compilation
+ * before.
+ */
+public class CheckerDaemonTest {
+
+    /** The directory of the test inputs. */
+    private static final String TEST_DIR = "tests" + File.separator + "daemon";
+
+    @Test
+    public void testCompilationsMatchFreshJavac() throws IOException, InterruptedException {
+        File sourceFile = new File(TEST_DIR, "DaemonInput.java");
+        // The options of the compilations, without the source file.
+        List<String> options =
+                TestUtilities.getCompilerOptions(
+                        TestConfigurationBuilder.getOutputDirFromProperty(),
+                        "-processor",
+                        FlowTestChecker.class.getName(),
+                        "-AstubWarnIfNotFound",
+                        "-Astubs=" + new File(TEST_DIR, "daemon.astub").getPath());
+
+        String expected =
+                TestUtilities.compile(Collections.singletonList(sourceFile), options, null);
+        assert expected.contains("StubParser") && expected.contains("assignment.type.incompatible")
+                : expected;
+
+        File daemonFile = File.createTempFile("daemon", ".txt");
+        daemonFile.delete();
+        File javaHome = new File(System.getProperty("java.home"));
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(javaHome, "bin"), "java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CheckerDaemon.class.getName());
+        command.add(daemonFile.getPath());
+        Process daemon =
+                new ProcessBuilder(command)
+                        .directory(new File("").getAbsoluteFile())
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+        try {
+            for (int i = 0; i < 600 && daemonFile.length() == 0; i++) {
+                Thread.sleep(100);
+            }
+            List<String> args = new ArrayList<>(options);
+            args.add(sourceFile.getPath());
+            for (int compilation = 0; compilation < 2; compilation++) {
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                Integer exitStatus =
+                        CheckerDaemon.compile(
+                                daemonFile,
+                                args,
+                                new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"),
+                                new PrintStream(err, true, "UTF-8"));
+                assert exitStatus != null && exitStatus == 1 : exitStatus;
+                assert err.toString("UTF-8").equals(expected)
+                        : "compilation " + compilation + ": " + err.toString("UTF-8");
+            }
+        } finally {
+            daemon.destroy();
+            daemon.waitFor();
+            Files.deleteIfExists(daemonFile.toPath());
+        }
+    }
+}
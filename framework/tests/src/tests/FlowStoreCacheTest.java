@@ -0,0 +1,23 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Runs the flow tests with a small store cache, so that stores are both reused and evicted by
+ * {@link org.checkerframework.dataflow.analysis.AnalysisResult}.
+ */
+public class FlowStoreCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowStoreCacheTest(List<File> testFiles) {
+        super(testFiles, FlowTestChecker.class, "flow", "-AflowStoreCacheSize=8", "-Anomsgtext");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow"};
+    }
+}
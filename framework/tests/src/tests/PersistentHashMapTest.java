@@ -0,0 +1,218 @@
+package tests;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import org.checkerframework.dataflow.util.PersistentHashMap;
+import org.junit.Test;
+
+/** This class tests the PersistentHashMap class by comparing it to a HashMap. */
+public class PersistentHashMapTest {
+
+    /** A key with a given hash code, so that tests can provoke hash collisions. */
+    static class Key {
+        final int hash;
+        final int id;
+
+        Key(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return id + "#" + hash;
+        }
+    }
+
+    /** Returns a key whose hash code collides with other keys, depending on {@code kind}. */
+    static Key key(int id, int kind) {
+        switch (kind) {
+            case 0:
+                return new Key(id % 7, id);
+            case 1:
+                return new Key(id << 27, id);
+            default:
+                return new Key(id * 31, id);
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        Random random = new Random(0);
+        for (int kind = 0; kind < 3; kind++) {
+            PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+            Map<Key, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 2000; i++) {
+                Key key = key(random.nextInt(300), kind);
+                if (random.nextInt(4) == 0) {
+                    assert equal(map.remove(key), expected.remove(key));
+                } else {
+                    int value = random.nextInt(3);
+                    assert equal(map.put(key, value), expected.put(key, value));
+                }
+                assert map.size() == expected.size();
+                assert equal(map.get(key), expected.get(key));
+                assert map.containsKey(key) == expected.containsKey(key);
+            }
+            assert map.equals(expected) && expected.equals(map);
+            assert map.hashCode() == expected.hashCode();
+        }
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(key(i, 0), i);
+        }
+        PersistentHashMap<Key, Integer> copy = map.copy();
+        copy.put(key(0, 0), -1);
+        copy.remove(key(1, 0));
+        copy.put(key(100, 0), 100);
+        assert map.size() == 100 && copy.size() == 100;
+        assert map.get(key(0, 0)) == 0 && copy.get(key(0, 0)) == -1;
+        assert map.containsKey(key(1, 0)) && !copy.containsKey(key(1, 0));
+        assert !map.containsKey(key(100, 0)) && copy.containsKey(key(100, 0));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            map.put(key(i, i % 3), i % 2);
+            expected.put(key(i, i % 3), i % 2);
+        }
+        for (Iterator<Map.Entry<Key, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Integer> entry = it.next();
+            if (entry.getValue() == 0) {
+                it.remove();
+                expected.remove(entry.getKey());
+            }
+        }
+        assert map.equals(expected) && map.size() == 250;
+    }
+
+    @Test
+    public void testIntersectAndContainsAllEntries() {
+        Random random = new Random(1);
+        for (int round = 0; round < 100; round++) {
+            int kind = round % 3;
+            PersistentHashMap<Key, Integer> map1 = new PersistentHashMap<>();
+            for (int i = 0; i < 200; i++) {
+                map1.put(key(random.nextInt(300), kind), random.nextInt(3));
+            }
+            PersistentHashMap<Key, Integer> map2 = map1.copy();
+            int updates = random.nextInt(50);
+            for (int i = 0; i < updates; i++) {
+                Key key = key(random.nextInt(300), kind);
+                if (random.nextBoolean()) {
+                    map2.remove(key);
+                } else {
+                    map2.put(key, random.nextInt(3));
+                }
+            }
+
+            Map<Key, Integer> expected = new HashMap<>();
+            for (Map.Entry<Key, Integer> entry : map1.entrySet()) {
+                Integer value2 = map2.get(entry.getKey());
+                if (value2 != null && value2.equals(entry.getValue())) {
+                    expected.put(entry.getKey(), entry.getValue());
+                }
+            }
+            PersistentHashMap<Key, Integer> result =
+                    map1.intersect(map2, (v1, v2) -> v1.equals(v2) ? v1 : null);
+            assert result.equals(expected) && result.size() == expected.size();
+
+            assert map1.containsAllEntriesOf(map2)
+                    == new HashMap<>(map1).entrySet().containsAll(map2.entrySet());
+            assert map1.containsAllEntriesOf(result) && map2.containsAllEntriesOf(result);
+        }
+    }
+
+    /** A key whose {@code equals} fails for keys of other classes, like some flow expressions. */
+    static class StrictKey {
+        final int hash;
+
+        StrictKey(int hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return ((StrictKey) o).hash == hash;
+        }
+    }
+
+    @Test
+    public void testKeysInSameSlotWithDifferentHashes() {
+        // The keys share the lowest 5 bits of their hash codes, so they share slots in the trie.
+        Key key = new Key(1, 1);
+        StrictKey strictKey = new StrictKey(1 + 32);
+        Key otherKey = new Key(1 + 64, 2);
+
+        PersistentHashMap<Object, Integer> map1 = new PersistentHashMap<>();
+        map1.put(key, 1);
+        assert !map1.containsKey(strictKey) && map1.get(strictKey) == null;
+        map1.put(strictKey, 2);
+        assert map1.size() == 2 && map1.get(key) == 1 && map1.get(strictKey) == 2;
+        assert map1.remove(strictKey) == 2 && map1.size() == 1;
+
+        PersistentHashMap<Object, Integer> map2 = new PersistentHashMap<>();
+        map2.put(strictKey, 1);
+        assert !map1.containsAllEntriesOf(map2) && !map2.containsAllEntriesOf(map1);
+        assert map1.intersect(map2, (v1, v2) -> v1).isEmpty();
+        assert map2.intersect(map1, (v1, v2) -> v1).isEmpty();
+
+        map2.put(otherKey, 1);
+        assert !map1.containsAllEntriesOf(map2) && !map2.containsAllEntriesOf(map1);
+        assert map1.intersect(map2, (v1, v2) -> v1).isEmpty();
+        assert map2.intersect(map1, (v1, v2) -> v1).isEmpty();
+    }
+
+    @Test
+    public void testIntersectMergeShared() {
+        PersistentHashMap<Key, Integer> map1 = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map1.put(key(i, i % 3), i);
+        }
+        PersistentHashMap<Key, Integer> map2 = map1.copy();
+        map2.put(key(0, 0), -1);
+
+        PersistentHashMap<Key, Integer> shared = map1.intersect(map2, (v1, v2) -> v1 + 1);
+        int unmerged = 0;
+        for (int i = 0; i < 100; i++) {
+            if (shared.get(key(i, i % 3)) == i) {
+                unmerged++;
+            }
+        }
+        assert shared.get(key(0, 0)) == 1 && unmerged > 0;
+
+        PersistentHashMap<Key, Integer> merged = map1.intersect(map2, (v1, v2) -> v1 + 1, true);
+        assert merged.size() == 100;
+        for (int i = 0; i < 100; i++) {
+            assert merged.get(key(i, i % 3)) == i + 1;
+        }
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+}
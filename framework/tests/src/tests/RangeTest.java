@@ -1,5 +1,6 @@
 package tests;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -371,6 +372,109 @@ public class RangeTest {
         }
     }
 
+    /**
+     * Returns the range of long values of the exact range [bigFrom, bigTo]: the wrapped bounds if
+     * they are in order and the range is not wider than the long type, and otherwise everything.
+     */
+    static Range exactToLongRange(BigInteger bigFrom, BigInteger bigTo) {
+        BigInteger width = bigTo.subtract(bigFrom).add(BigInteger.ONE);
+        if (width.bitLength() > 64 || bigFrom.longValue() > bigTo.longValue()) {
+            return Range.EVERYTHING;
+        }
+        return new Range(bigFrom.longValue(), bigTo.longValue());
+    }
+
+    static BigInteger big(long value) {
+        return BigInteger.valueOf(value);
+    }
+
+    @Test
+    public void testPlusMinusTimesAtLongBounds() {
+        assert new Range(Long.MAX_VALUE, Long.MAX_VALUE)
+                .plus(new Range(1, 1))
+                .equals(new Range(Long.MIN_VALUE, Long.MIN_VALUE));
+        assert new Range(Long.MAX_VALUE - 1, Long.MAX_VALUE)
+                .plus(new Range(0, 1))
+                .equals(Range.EVERYTHING);
+        assert new Range(Long.MIN_VALUE, Long.MIN_VALUE)
+                .minus(new Range(1, 1))
+                .equals(new Range(Long.MAX_VALUE, Long.MAX_VALUE));
+        assert new Range(Long.MIN_VALUE, Long.MIN_VALUE + 1)
+                .minus(new Range(0, 1))
+                .equals(Range.EVERYTHING);
+        assert new Range(Long.MIN_VALUE, Long.MIN_VALUE)
+                .times(new Range(-1, -1))
+                .equals(new Range(Long.MIN_VALUE, Long.MIN_VALUE));
+        assert new Range(Long.MAX_VALUE, Long.MAX_VALUE)
+                .times(new Range(-1, 1))
+                .equals(new Range(-Long.MAX_VALUE, Long.MAX_VALUE));
+        assert new Range(Long.MAX_VALUE, Long.MAX_VALUE)
+                .times(new Range(2, 2))
+                .equals(new Range(-2, -2));
+
+        // The long arithmetic must give the same ranges as exact arithmetic.
+        for (Range range1 : ranges) {
+            for (Range range2 : ranges) {
+                Range expected =
+                        exactToLongRange(
+                                big(range1.from).add(big(range2.from)),
+                                big(range1.to).add(big(range2.to)));
+                assert range1.plus(range2).equals(expected)
+                        : String.format("Range.plus: %s %s", range1, range2);
+
+                expected =
+                        exactToLongRange(
+                                big(range1.from).subtract(big(range2.to)),
+                                big(range1.to).subtract(big(range2.from)));
+                assert range1.minus(range2).equals(expected)
+                        : String.format("Range.minus: %s %s", range1, range2);
+
+                BigInteger fromFrom = big(range1.from).multiply(big(range2.from));
+                BigInteger fromTo = big(range1.from).multiply(big(range2.to));
+                BigInteger toFrom = big(range1.to).multiply(big(range2.from));
+                BigInteger toTo = big(range1.to).multiply(big(range2.to));
+                expected =
+                        exactToLongRange(
+                                fromFrom.min(fromTo).min(toFrom).min(toTo),
+                                fromFrom.max(fromTo).max(toFrom).max(toTo));
+                assert range1.times(range2).equals(expected)
+                        : String.format("Range.times: %s %s", range1, range2);
+            }
+        }
+    }
+
+    @Test
+    public void testShiftLeftAtLongBounds() {
+        assert new Range(Long.MAX_VALUE, Long.MAX_VALUE)
+                .shiftLeft(new Range(1, 1))
+                .equals(new Range(-2, -2));
+        assert new Range(Long.MIN_VALUE, Long.MIN_VALUE)
+                .shiftLeft(new Range(1, 1))
+                .equals(new Range(0, 0));
+        assert new Range(Long.MIN_VALUE, Long.MAX_VALUE)
+                .shiftLeft(new Range(0, 0))
+                .equals(Range.EVERYTHING);
+        assert new Range(1, 1).shiftLeft(new Range(0, 63)).equals(Range.EVERYTHING);
+
+        // The long arithmetic must give the same ranges as exact arithmetic.
+        for (Range range : ranges) {
+            for (int shiftFrom = 0; shiftFrom <= 31; shiftFrom += 3) {
+                for (int shiftTo = shiftFrom; shiftTo <= 31; shiftTo += 4) {
+                    Range expected =
+                            exactToLongRange(
+                                    big(range.from)
+                                            .shiftLeft(range.from >= 0 ? shiftFrom : shiftTo),
+                                    big(range.to).shiftLeft(range.to >= 0 ? shiftTo : shiftFrom));
+                    Range result = range.shiftLeft(new Range(shiftFrom, shiftTo));
+                    assert result.equals(expected)
+                            : String.format(
+                                    "Range.shiftLeft: %s [%s..%s] => %s, expected %s",
+                                    range, shiftFrom, shiftTo, result, expected);
+                }
+            }
+        }
+    }
+
     @Test
     public void testDivide() {
         assert new Range(1, 2).divide(new Range(0, 0)) == Range.NOTHING;
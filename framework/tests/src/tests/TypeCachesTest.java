@@ -0,0 +1,103 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.junit.Test;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Tests that the caches of an {@link AnnotatedTypeFactory} that hold results computed from
+ * annotated types are used, and that they are cleared when the compilation unit changes.
+ *
+ * <p>The test input tests/typecaches/TypeCaches.java repeats the same subtype checks, invokes the
+ * same method twice, and converts a {@code String} to two of its supertypes.
+ */
+public class TypeCachesTest {
+
+    /** Matches a line of {@link AnnotatedTypeFactory#printCacheStatistics}. */
+    private static final Pattern STATISTICS =
+            Pattern.compile("\\s*(\\w+): size (\\d+)/\\d+.*, hits (\\d+), misses (\\d+),.*");
+
+    @Test
+    public void testSubtypeCache() throws IOException {
+        AnnotatedTypeFactory factory = typeFactoryAfterCompilation();
+        long[] isSubtype = statistics(factory).get("isSubtype");
+        assert isSubtype != null;
+        assert isSubtype[0] > 0 && isSubtype[1] > 0 && isSubtype[2] > 0
+                : Arrays.toString(isSubtype);
+
+        factory.setRoot(null);
+        isSubtype = statistics(factory).get("isSubtype");
+        assert isSubtype[0] == 0 : Arrays.toString(isSubtype);
+    }
+
+    @Test
+    public void testSupertypeCaches() throws IOException {
+        AnnotatedTypeFactory factory = typeFactoryAfterCompilation();
+        for (String name : Arrays.asList("asSuper", "directSuperTypes")) {
+            long[] cache = statistics(factory).get(name);
+            assert cache != null : name;
+            assert cache[0] > 0 && cache[1] > 0 && cache[2] > 0
+                    : name + " " + Arrays.toString(cache);
+        }
+
+        factory.setRoot(null);
+        for (String name : Arrays.asList("asSuper", "directSuperTypes")) {
+            long[] cache = statistics(factory).get(name);
+            assert cache[0] == 0 : name + " " + Arrays.toString(cache);
+        }
+    }
+
+    /** Checks the test input, and returns the type factory of the checker. */
+    private static AnnotatedTypeFactory typeFactoryAfterCompilation() {
+        File sourceFile = new File("tests" + File.separator + "typecaches", "TypeCaches.java");
+        FlowTestChecker checker = new FlowTestChecker();
+        TestUtilities.compile(
+                Collections.singletonList(sourceFile),
+                TestUtilities.getCompilerOptions(
+                        TestConfigurationBuilder.getOutputDirFromProperty()),
+                Collections.singletonList(checker));
+        return checker.getTypeFactory();
+    }
+
+    /**
+     * Returns the size, hits and misses of each cache of {@code factory}, by the name of the
+     * cache.
+     */
+    private static Map<String, long[]> statistics(AnnotatedTypeFactory factory)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        try {
+            factory.printCacheStatistics();
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, long[]> result = new HashMap<>();
+        for (String line : bytes.toString("UTF-8").split("\\R")) {
+            Matcher matcher = STATISTICS.matcher(line);
+            if (matcher.matches()) {
+                result.put(
+                        matcher.group(1),
+                        new long[] {
+                            Long.parseLong(matcher.group(2)),
+                            Long.parseLong(matcher.group(3)),
+                            Long.parseLong(matcher.group(4))
+                        });
+            }
+        }
+        return result;
+    }
+}
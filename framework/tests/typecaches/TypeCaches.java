@@ -0,0 +1,12 @@
+import testlib.util.Odd;
+
+class TypeCaches {
+    void assign(@Odd String s, String t) {
+        @Odd String a = s;
+        @Odd String b = s;
+        CharSequence c = t;
+        Comparable<String> d = t;
+        t.length();
+        t.length();
+    }
+}
@@ -0,0 +1,24 @@
+import org.checkerframework.common.value.qual.*;
+
+// Binary operations on more than MAX_VALUES combinations of values whose distinct results do not
+// exceed MAX_VALUES, and operations whose eleven distinct results do not fit in a set of values.
+class ValueSetsOfBinaries {
+    void integral(
+            @IntVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) int digit,
+            @IntVal({0, 1}) int bit,
+            @IntVal({0, 1}) long longBit) {
+        @IntVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) int a = digit * bit;
+        @IntVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) long b = digit * longBit;
+        @IntRange(from = 0, to = 10) int c = digit + bit;
+        //:: error: (assignment.type.incompatible)
+        @IntVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) int d = digit + bit;
+    }
+
+    void floating(
+            @DoubleVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) double digit,
+            @DoubleVal({0, 1}) float bit) {
+        @DoubleVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) double a = digit * bit;
+        //:: error: (assignment.type.incompatible)
+        @DoubleVal({0, 1, 2, 3, 4, 5, 6, 7, 8, 9}) double b = digit + bit;
+    }
+}
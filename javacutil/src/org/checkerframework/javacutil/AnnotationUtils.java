@@ -50,6 +50,8 @@ public class AnnotationUtils {
         annotationMirrorNames.clear();
         annotationMirrorSimpleNames.clear();
         annotationClassNames.clear();
+        annotationKeys.clear();
+        canonicalAnnotationKeys.clear();
     }
 
     // **********************************************************************
@@ -89,6 +91,86 @@ public class AnnotationUtils {
                     Collections.synchronizedMap(
                             new HashMap<Class<? extends Annotation>, /*@Interned*/ String>());
 
+    private static final int ANNOTATION_KEY_CACHE_SIZE = 10000;
+
+    /**
+     * Cache the canonical keys of AnnotationMirrors. Mirrors that are the same according to {@link
+     * #areSame(AnnotationMirror, AnnotationMirror)} have the same key, so keys can be compared with
+     * ==.
+     */
+    private static final Map<AnnotationMirror, AnnotationKey> annotationKeys =
+            Collections.synchronizedMap(
+                    CollectionUtils.<AnnotationMirror, AnnotationKey>createLRUCache(
+                            ANNOTATION_KEY_CACHE_SIZE));
+
+    /**
+     * Maps the name and element values of each distinct annotation to its canonical key. Unlike
+     * {@link #annotationKeys}, this map is not bounded, so that a mirror that was evicted from that
+     * cache gets the same key again.
+     */
+    private static final Map<String, AnnotationKey> canonicalAnnotationKeys =
+            Collections.synchronizedMap(new HashMap<String, AnnotationKey>());
+
+    /**
+     * The canonical representation of an annotation and its element values, including defaults.
+     * There is one key for each distinct annotation seen since the last {@link #clear()}.
+     */
+    private static final class AnnotationKey {
+        /** The first mirror of the annotation that was seen. */
+        final AnnotationMirror canonical;
+
+        /** The string that annotations are ordered by: {@code canonical.toString()}. */
+        final String sortKey;
+
+        /** The hash code of the annotation, consistent with {@link #areSame}. */
+        final int hash;
+
+        /** The number of distinct annotations seen before this one; breaks ties in the ordering. */
+        final int ordinal;
+
+        AnnotationKey(AnnotationMirror canonical, String identity, int ordinal) {
+            this.canonical = canonical;
+            this.sortKey = canonical.toString();
+            this.hash = identity.hashCode();
+            this.ordinal = ordinal;
+        }
+    }
+
+    /** Returns the canonical key of {@code anno}; see {@link AnnotationKey}. */
+    private static AnnotationKey annotationKey(AnnotationMirror anno) {
+        AnnotationKey key = annotationKeys.get(anno);
+        if (key != null) {
+            return key;
+        }
+        // The same string that areSame used to compare.
+        String identity = annotationName(anno) + getElementValuesWithDefaults(anno).toString();
+        synchronized (canonicalAnnotationKeys) {
+            key = canonicalAnnotationKeys.get(identity);
+            if (key == null) {
+                key = new AnnotationKey(anno, identity, canonicalAnnotationKeys.size());
+                canonicalAnnotationKeys.put(identity, key);
+            }
+        }
+        annotationKeys.put(anno, key);
+        return key;
+    }
+
+    /**
+     * Returns the first mirror seen in this compilation that is the same annotation as {@code
+     * anno}, according to {@link #areSame(AnnotationMirror, AnnotationMirror)}.
+     */
+    public static AnnotationMirror canonicalAnnotation(AnnotationMirror anno) {
+        return annotationKey(anno).canonical;
+    }
+
+    /**
+     * Returns a hash code of {@code anno} that is consistent with {@link #areSame(AnnotationMirror,
+     * AnnotationMirror)}.
+     */
+    public static int annotationHashCode(AnnotationMirror anno) {
+        return annotationKey(anno).hash;
+    }
+
     /**
      * Creates an {@link AnnotationMirror} given by a particular fully-qualified name.
      * getElementValues on the result returns an empty map.
@@ -206,21 +288,14 @@ public class AnnotationUtils {
      */
     public static boolean areSame(
             /*@Nullable*/ AnnotationMirror a1, /*@Nullable*/ AnnotationMirror a2) {
-        if (a1 != null && a2 != null) {
-            if (annotationName(a1) != annotationName(a2)) {
-                return false;
-            }
-
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval1 =
-                    getElementValuesWithDefaults(a1);
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval2 =
-                    getElementValuesWithDefaults(a2);
-
-            return elval1.toString().equals(elval2.toString());
+        if (a1 == a2) {
+            // only true, iff both are null or the same mirror
+            return true;
         }
-
-        // only true, iff both are null
-        return a1 == a2;
+        if (a1 == null || a2 == null) {
+            return false;
+        }
+        return annotationKey(a1) == annotationKey(a2);
     }
 
     /**
@@ -370,19 +445,20 @@ public class AnnotationUtils {
                 @Override
                 public int compare(AnnotationMirror a1, AnnotationMirror a2) {
                     // AnnotationMirror.toString() prints the elements of an annotation in the
-                    // order in which they were written. So, use areSame to check for equality.
-                    if (AnnotationUtils.areSame(a1, a2)) {
+                    // order in which they were written. So, compare the canonical keys, which
+                    // are the same iff areSame is true, to check for equality.
+                    AnnotationKey k1 = annotationKey(a1);
+                    AnnotationKey k2 = annotationKey(a2);
+                    if (k1 == k2) {
                         return 0;
                     }
 
-                    String n1 = a1.toString();
-                    String n2 = a2.toString();
-
                     // Because the AnnotationMirror.toString prints the annotation as it appears
                     // in source code, the order in which annotations of the same class are
                     // sorted may be confusing.  For example, it might order
                     // @IntRange(from=1, to=MAX) before @IntRange(to=MAX,from=0).
-                    return n1.compareTo(n2);
+                    int result = k1.sortKey.compareTo(k2.sortKey);
+                    return result != 0 ? result : Integer.compare(k1.ordinal, k2.ordinal);
                 }
             };
 
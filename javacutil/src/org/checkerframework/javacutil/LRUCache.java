@@ -0,0 +1,170 @@
+package org.checkerframework.javacutil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache that records how often it is hit, missed and evicted from, and that
+ * can optionally grow when it misses often.
+ *
+ * <p>Lookups are counted by {@link #containsKey(Object)}, because clients of caches that may map
+ * keys to {@code null} test for the key before calling {@link #get(Object)}. Clients that never
+ * store {@code null} can use {@link #getCounted(Object)} instead of the two calls.
+ *
+ * <p>An adaptive cache doubles its capacity, up to a fixed limit, instead of evicting an entry when
+ * more than half of the lookups since its last growth were misses and at least a quarter of the
+ * maximum heap size is still free.
+ */
+public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 20171017L;
+
+    /** The name of this cache, used in {@link #getStatistics()}. */
+    private final String name;
+
+    /** The number of entries after which the least recently used entry is evicted. */
+    private int maxSize;
+
+    /** The capacity up to which an adaptive cache can grow, or 0 if this cache is not adaptive. */
+    private final int adaptiveLimit;
+
+    /** The number of lookups that found an entry. */
+    private long hits = 0;
+
+    /** The number of lookups that did not find an entry. */
+    private long misses = 0;
+
+    /** The number of entries that were evicted. */
+    private long evictions = 0;
+
+    /** The number of times an adaptive cache has grown. */
+    private int growths = 0;
+
+    /** The number of lookups since this cache was created or last grew. */
+    private long recentLookups = 0;
+
+    /** The number of misses since this cache was created or last grew. */
+    private long recentMisses = 0;
+
+    /**
+     * Creates a cache that holds at most {@code maxSize} entries.
+     *
+     * @param name the name of the cache, used in statistics
+     * @param maxSize the maximum number of entries
+     */
+    public LRUCache(String name, int maxSize) {
+        this(name, maxSize, 0);
+    }
+
+    /**
+     * Creates a cache that initially holds at most {@code maxSize} entries, and that grows up to
+     * {@code adaptiveLimit} entries if {@code adaptiveLimit} is larger than {@code maxSize}.
+     *
+     * @param name the name of the cache, used in statistics
+     * @param maxSize the initial maximum number of entries
+     * @param adaptiveLimit the maximum number of entries that the cache can grow to, or 0 if the
+     *     cache should not grow
+     */
+    public LRUCache(String name, int maxSize, int adaptiveLimit) {
+        super(16, 0.75f, true);
+        this.name = name;
+        this.maxSize = maxSize;
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
+    /** Returns true if this cache contains {@code key}, and counts the lookup as a hit or miss. */
+    @Override
+    public boolean containsKey(Object key) {
+        boolean result = super.containsKey(key);
+        recordLookup(result);
+        return result;
+    }
+
+    /**
+     * Returns the value for {@code key}, or {@code null} if there is none, and counts the lookup as
+     * a hit or miss. Only use this method if the cache never maps a key to {@code null}.
+     */
+    public V getCounted(Object key) {
+        V result = get(key);
+        recordLookup(result != null);
+        return result;
+    }
+
+    private void recordLookup(boolean hit) {
+        recentLookups++;
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+            recentMisses++;
+        }
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (size() <= maxSize) {
+            return false;
+        }
+        if (shouldGrow()) {
+            maxSize = (int) Math.min((long) maxSize * 2, adaptiveLimit);
+            growths++;
+            recentLookups = 0;
+            recentMisses = 0;
+            return false;
+        }
+        evictions++;
+        return true;
+    }
+
+    /** Returns true if this adaptive cache should grow instead of evicting an entry. */
+    private boolean shouldGrow() {
+        if (maxSize >= adaptiveLimit
+                || recentLookups < maxSize
+                || recentMisses * 2 <= recentLookups) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return runtime.maxMemory() - used > runtime.maxMemory() / 4;
+    }
+
+    /** @return the current maximum number of entries */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return the number of lookups that found an entry */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return the number of lookups that did not find an entry */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return the number of entries that were evicted */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** @return a one-line summary of the size, hit rate and evictions of this cache */
+    public String getStatistics() {
+        long lookups = hits + misses;
+        String hitRate = lookups == 0 ? "n/a" : String.format("%.1f%%", 100.0 * hits / lookups);
+        return name
+                + ": size "
+                + size()
+                + "/"
+                + maxSize
+                + (growths == 0 ? "" : " (grew " + growths + " times)")
+                + ", hits "
+                + hits
+                + ", misses "
+                + misses
+                + ", hit rate "
+                + hitRate
+                + ", evictions "
+                + evictions;
+    }
+}